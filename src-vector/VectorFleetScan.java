@@ -0,0 +1,62 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorFleetScan implements FleetStore.Scan {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double[] LANE_INDEXES = new double[SPECIES.length()];
+
+    static {
+        for (int i = 0; i < LANE_INDEXES.length; i++) {
+            LANE_INDEXES[i] = i;
+        }
+    }
+
+    @Override
+    public int nearest(double[] xs, double[] ys, byte[] states, int count, double x, double y) {
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(count);
+        DoubleVector px = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector py = DoubleVector.broadcast(SPECIES, y);
+        DoubleVector infinity = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector laneIndexes = DoubleVector.fromArray(SPECIES, LANE_INDEXES, 0);
+        DoubleVector bestDistances = infinity;
+        DoubleVector bestIndexes = DoubleVector.broadcast(SPECIES, -1);
+
+        int i = 0;
+        for (; i < bound; i += lanes) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(px);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(py);
+            DoubleVector distances = dx.mul(dx).add(dy.mul(dy));
+
+            DoubleVector laneStates = (DoubleVector) ByteVector.fromArray(ByteVector.SPECIES_64, states, i)
+                    .convertShape(VectorOperators.B2D, SPECIES, 0);
+            VectorMask<Double> busy = laneStates.compare(VectorOperators.NE, Taxi.AVAILABLE);
+            distances = distances.blend(infinity, busy);
+
+            VectorMask<Double> closer = distances.compare(VectorOperators.LT, bestDistances);
+            bestDistances = bestDistances.blend(distances, closer);
+            bestIndexes = bestIndexes.blend(laneIndexes.add(i), closer);
+        }
+
+        int best = -1;
+        double bestDistance = bestDistances.reduceLanes(VectorOperators.MIN);
+        if (bestDistance < Double.POSITIVE_INFINITY) {
+            int lane = bestDistances.compare(VectorOperators.EQ, bestDistance).firstTrue();
+            best = (int) bestIndexes.lane(lane);
+        }
+
+        for (; i < count; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            double distance = dx * dx + dy * dy;
+            if (states[i] == Taxi.AVAILABLE && distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
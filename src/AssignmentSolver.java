@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+class AssignmentSolver {
+    private static final double INFINITY = Double.MAX_VALUE / 4;
+
+    private AssignmentSolver() {
+    }
+
+    static int[] hungarian(double[][] cost, int rows, int cols) {
+        if (rows > cols) {
+            double[][] transposed = new double[cols][rows];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    transposed[j][i] = cost[i][j];
+                }
+            }
+
+            int[] columnMatch = hungarian(transposed, cols, rows);
+            int[] match = new int[rows];
+            Arrays.fill(match, -1);
+            for (int j = 0; j < cols; j++) {
+                if (columnMatch[j] >= 0) {
+                    match[columnMatch[j]] = j;
+                }
+            }
+            return match;
+        }
+
+        double[] u = new double[rows + 1];
+        double[] v = new double[cols + 1];
+        int[] p = new int[cols + 1];
+        int[] way = new int[cols + 1];
+        double[] minv = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+
+        for (int i = 1; i <= rows; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, INFINITY);
+            Arrays.fill(used, false);
+
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = INFINITY;
+                int j1 = 0;
+
+                for (int j = 1; j <= cols; j++) {
+                    if (!used[j]) {
+                        double current = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (current < minv[j]) {
+                            minv[j] = current;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+
+                for (int j = 0; j <= cols; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] match = new int[rows];
+        Arrays.fill(match, -1);
+        for (int j = 1; j <= cols; j++) {
+            if (p[j] != 0) {
+                match[p[j] - 1] = j - 1;
+            }
+        }
+        return match;
+    }
+
+    static int[] greedy(int rows, int cols, int[] pairRows, int[] pairCols, double[] pairCosts, int pairCount) {
+        Integer[] order = new Integer[pairCount];
+        for (int i = 0; i < pairCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(pairCosts[a], pairCosts[b]));
+
+        int[] match = new int[rows];
+        Arrays.fill(match, -1);
+        boolean[] columnUsed = new boolean[cols];
+
+        for (int index : order) {
+            int row = pairRows[index];
+            int col = pairCols[index];
+            if (match[row] < 0 && !columnUsed[col]) {
+                match[row] = col;
+                columnUsed[col] = true;
+            }
+        }
+        return match;
+    }
+}
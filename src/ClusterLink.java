@@ -0,0 +1,526 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+class ClusterLink implements Runnable, Closeable {
+    interface Listener {
+        void onRequest(int from, RideRequest request);
+        void onTaxi(int from, int taxiId, Location location);
+        void onDone(int from);
+        void onWanted(int from, int taxis);
+    }
+
+    static final int FRAME_CAPACITY = 64 * 1024;
+    private static final int FRAME_HEADER = 8;
+    private static final int FLUSH_THRESHOLD = FRAME_CAPACITY / 2;
+    private static final long FLUSH_INTERVAL_MILLIS = 1;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+    private static final long RETRY_MILLIS = 50;
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final long LINGER_MILLIS = 1000;
+
+    private static final byte HELLO = 0;
+    private static final byte REQUEST = 1;
+    private static final byte TAXI = 2;
+    private static final byte DONE = 3;
+    private static final byte WANTED = 4;
+    private static final int REQUEST_SIZE = 1 + 4 + 8 + 4 * 8;
+    private static final int TAXI_SIZE = 1 + 4 + 2 * 8;
+    private static final int DONE_SIZE = 1;
+    private static final int WANTED_SIZE = 1 + 4;
+
+    private static final class Outbox {
+        private final int peer;
+        private final InetSocketAddress address;
+        private final ReentrantLock lock;
+        private final Condition writable;
+        private ByteBuffer filling;
+        private ByteBuffer sending;
+        private int fillingCount;
+        private boolean wakeupRequested;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private boolean ready;
+        private long retryAtMillis;
+        private long lastFlushNanos;
+        private volatile boolean failed;
+
+        private Outbox(int peer, InetSocketAddress address) {
+            this.peer = peer;
+            this.address = address;
+            this.lock = new ReentrantLock();
+            this.writable = lock.newCondition();
+            this.filling = ByteBuffer.allocateDirect(FRAME_CAPACITY);
+            this.sending = ByteBuffer.allocateDirect(FRAME_CAPACITY);
+            this.filling.position(FRAME_HEADER);
+            this.sending.limit(0);
+        }
+
+        private boolean isIdle() {
+            return failed || (!sending.hasRemaining() && fillingCount == 0);
+        }
+    }
+
+    private static final class Inbound {
+        private final ByteBuffer buffer;
+        private int peer;
+
+        private Inbound() {
+            this.buffer = ByteBuffer.allocateDirect(FRAME_CAPACITY * 2);
+            this.peer = -1;
+        }
+    }
+
+    private final int node;
+    private final Listener listener;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Outbox[] outboxes;
+    private final CountDownLatch connected;
+    private final long startMillis;
+    private final AtomicLong messagesSent;
+    private final AtomicLong framesSent;
+    private final AtomicLong writeCalls;
+    private final AtomicLong bytesSent;
+    private final AtomicLong messagesReceived;
+    private final AtomicLong framesReceived;
+    private final AtomicLong readCalls;
+    private final AtomicLong dropped;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private ClusterLink(int node, int nodes, int basePort, Listener listener) throws IOException {
+        this.node = node;
+        this.listener = listener;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.outboxes = new Outbox[nodes];
+        this.connected = new CountDownLatch(2 * (nodes - 1));
+        this.startMillis = System.currentTimeMillis();
+        this.messagesSent = new AtomicLong();
+        this.framesSent = new AtomicLong();
+        this.writeCalls = new AtomicLong();
+        this.bytesSent = new AtomicLong();
+        this.messagesReceived = new AtomicLong();
+        this.framesReceived = new AtomicLong();
+        this.readCalls = new AtomicLong();
+        this.dropped = new AtomicLong();
+
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(new InetSocketAddress(loopback, basePort + node));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        for (int peer = 0; peer < nodes; peer++) {
+            if (peer != node) {
+                Outbox outbox = new Outbox(peer, new InetSocketAddress(loopback, basePort + peer));
+                outbox.filling.put(HELLO).putInt(node);
+                outbox.fillingCount = 1;
+                outboxes[peer] = outbox;
+            }
+        }
+        this.thread = new Thread(this, "ClusterLink-" + node);
+        this.thread.setDaemon(true);
+    }
+
+    static ClusterLink open(int node, int nodes, int basePort, Listener listener) throws IOException {
+        ClusterLink link = new ClusterLink(node, nodes, basePort, listener);
+        link.thread.start();
+        return link;
+    }
+
+    public boolean awaitConnected(long timeout, TimeUnit unit) throws InterruptedException {
+        return connected.await(timeout, unit);
+    }
+
+    public long getMessagesSent() { return messagesSent.get(); }
+    public long getFramesSent() { return framesSent.get(); }
+    public long getWriteCalls() { return writeCalls.get(); }
+    public long getBytesSent() { return bytesSent.get(); }
+    public long getMessagesReceived() { return messagesReceived.get(); }
+    public long getFramesReceived() { return framesReceived.get(); }
+    public long getReadCalls() { return readCalls.get(); }
+    public long getDropped() { return dropped.get(); }
+
+    public boolean sendRequest(int peer, RideRequest request) throws InterruptedException {
+        Outbox outbox = outboxes[peer];
+        outbox.lock.lockInterruptibly();
+        try {
+            ByteBuffer buffer = reserve(outbox, REQUEST_SIZE);
+            if (buffer == null) {
+                return false;
+            }
+            Location pickup = request.getPickupLocation();
+            Location destination = request.getDestination();
+            buffer.put(REQUEST).putInt(request.getId()).putLong(request.getTimestamp())
+                    .putDouble(pickup.getX()).putDouble(pickup.getY())
+                    .putDouble(destination.getX()).putDouble(destination.getY());
+            commit(outbox);
+            return true;
+        } finally {
+            outbox.lock.unlock();
+        }
+    }
+
+    public boolean sendTaxi(int peer, int taxiId, Location location) throws InterruptedException {
+        Outbox outbox = outboxes[peer];
+        outbox.lock.lockInterruptibly();
+        try {
+            ByteBuffer buffer = reserve(outbox, TAXI_SIZE);
+            if (buffer == null) {
+                return false;
+            }
+            buffer.put(TAXI).putInt(taxiId).putDouble(location.getX()).putDouble(location.getY());
+            commit(outbox);
+            return true;
+        } finally {
+            outbox.lock.unlock();
+        }
+    }
+
+    public boolean sendDone(int peer) throws InterruptedException {
+        Outbox outbox = outboxes[peer];
+        outbox.lock.lockInterruptibly();
+        try {
+            ByteBuffer buffer = reserve(outbox, DONE_SIZE);
+            if (buffer == null) {
+                return false;
+            }
+            buffer.put(DONE);
+            commit(outbox);
+            return true;
+        } finally {
+            outbox.lock.unlock();
+        }
+    }
+
+    public boolean sendWanted(int peer, int taxis) throws InterruptedException {
+        Outbox outbox = outboxes[peer];
+        outbox.lock.lockInterruptibly();
+        try {
+            ByteBuffer buffer = reserve(outbox, WANTED_SIZE);
+            if (buffer == null) {
+                return false;
+            }
+            buffer.put(WANTED).putInt(taxis);
+            commit(outbox);
+            return true;
+        } finally {
+            outbox.lock.unlock();
+        }
+    }
+
+    private ByteBuffer reserve(Outbox outbox, int size) throws InterruptedException {
+        while (!outbox.failed && !closed && outbox.filling.remaining() < size) {
+            wakeup(outbox);
+            outbox.writable.await();
+        }
+        if (outbox.failed || closed) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        return outbox.filling;
+    }
+
+    private void commit(Outbox outbox) {
+        outbox.fillingCount++;
+        messagesSent.incrementAndGet();
+        if (outbox.filling.position() >= FLUSH_THRESHOLD) {
+            wakeup(outbox);
+        }
+    }
+
+    private void wakeup(Outbox outbox) {
+        if (!outbox.wakeupRequested) {
+            outbox.wakeupRequested = true;
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Outbox outbox : outboxes) {
+            if (outbox != null) {
+                outbox.lock.lock();
+                try {
+                    outbox.writable.signalAll();
+                } finally {
+                    outbox.lock.unlock();
+                }
+            }
+        }
+        selector.wakeup();
+        try {
+            thread.join(LINGER_MILLIS * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long lingerDeadline = Long.MAX_VALUE;
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (closed) {
+                    lingerDeadline = Math.min(lingerDeadline, now + LINGER_MILLIS);
+                    if (isFlushed() || now >= lingerDeadline) {
+                        break;
+                    }
+                }
+                connectPending(now);
+                selector.select(FLUSH_INTERVAL_MILLIS);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isConnectable()) {
+                        finishConnect((Outbox) key.attachment());
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+
+                long nowNanos = System.nanoTime();
+                for (Outbox outbox : outboxes) {
+                    if (outbox != null && outbox.ready && !outbox.failed) {
+                        flush(outbox, nowNanos);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.printf("[Cluster] Node %d link failed: %s\n", node, e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private boolean isFlushed() {
+        for (Outbox outbox : outboxes) {
+            if (outbox != null && outbox.ready && !outbox.isIdle()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void connectPending(long now) throws IOException {
+        for (Outbox outbox : outboxes) {
+            if (outbox == null || outbox.ready || outbox.failed || outbox.channel != null || now < outbox.retryAtMillis) {
+                continue;
+            }
+            if (now - startMillis > CONNECT_TIMEOUT_MILLIS) {
+                fail(outbox, new IOException("connect timed out"));
+                continue;
+            }
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            outbox.channel = channel;
+            outbox.key = channel.register(selector, SelectionKey.OP_CONNECT, outbox);
+            if (channel.connect(outbox.address)) {
+                connected(outbox);
+            }
+        }
+    }
+
+    private void finishConnect(Outbox outbox) {
+        try {
+            if (outbox.channel.finishConnect()) {
+                connected(outbox);
+            }
+        } catch (IOException e) {
+            closeQuietly(outbox.channel);
+            outbox.channel = null;
+            outbox.key = null;
+            outbox.retryAtMillis = System.currentTimeMillis() + RETRY_MILLIS;
+        }
+    }
+
+    private void connected(Outbox outbox) {
+        outbox.ready = true;
+        outbox.key.interestOps(0);
+        outbox.lastFlushNanos = System.nanoTime() - FLUSH_INTERVAL_NANOS;
+        connected.countDown();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Inbound());
+    }
+
+    private void flush(Outbox outbox, long nowNanos) {
+        if (!outbox.sending.hasRemaining()) {
+            outbox.lock.lock();
+            try {
+                boolean due = outbox.filling.position() >= FLUSH_THRESHOLD
+                        || nowNanos - outbox.lastFlushNanos >= FLUSH_INTERVAL_NANOS || closed;
+                if (outbox.fillingCount == 0 || !due) {
+                    return;
+                }
+                ByteBuffer frame = outbox.filling;
+                frame.putInt(0, frame.position() - FRAME_HEADER).putInt(4, outbox.fillingCount);
+                frame.flip();
+                outbox.filling = outbox.sending;
+                outbox.filling.clear().position(FRAME_HEADER);
+                outbox.sending = frame;
+                outbox.fillingCount = 0;
+                outbox.wakeupRequested = false;
+                outbox.lastFlushNanos = nowNanos;
+                outbox.writable.signalAll();
+            } finally {
+                outbox.lock.unlock();
+            }
+            framesSent.incrementAndGet();
+        }
+
+        try {
+            int written = outbox.channel.write(outbox.sending);
+            writeCalls.incrementAndGet();
+            bytesSent.addAndGet(written);
+            outbox.key.interestOps(outbox.sending.hasRemaining() ? SelectionKey.OP_WRITE : 0);
+        } catch (IOException e) {
+            fail(outbox, e);
+        }
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Inbound inbound = (Inbound) key.attachment();
+        ByteBuffer buffer = inbound.buffer;
+        try {
+            int read = channel.read(buffer);
+            readCalls.incrementAndGet();
+            if (read < 0) {
+                key.cancel();
+                closeQuietly(channel);
+                return;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= FRAME_HEADER) {
+                int length = buffer.getInt(buffer.position());
+                if (length < 0 || length > FRAME_CAPACITY - FRAME_HEADER) {
+                    throw new IOException("Corrupt frame length " + length);
+                }
+                if (buffer.remaining() < FRAME_HEADER + length) {
+                    break;
+                }
+                buffer.getInt();
+                int count = buffer.getInt();
+                framesReceived.incrementAndGet();
+                for (int i = 0; i < count; i++) {
+                    decode(inbound, buffer);
+                }
+            }
+            buffer.compact();
+        } catch (IOException | RuntimeException e) {
+            System.err.printf("[Cluster] Node %d dropped inbound link from node %d: %s\n", node, inbound.peer, e);
+            key.cancel();
+            closeQuietly(channel);
+        }
+    }
+
+    private void decode(Inbound inbound, ByteBuffer buffer) throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case HELLO:
+                inbound.peer = buffer.getInt();
+                connected.countDown();
+                return;
+            case REQUEST: {
+                int id = buffer.getInt();
+                long timestamp = buffer.getLong();
+                Location pickup = new Location(buffer.getDouble(), buffer.getDouble());
+                Location destination = new Location(buffer.getDouble(), buffer.getDouble());
+                messagesReceived.incrementAndGet();
+                listener.onRequest(inbound.peer, new RideRequest(id, pickup, destination, timestamp));
+                return;
+            }
+            case TAXI: {
+                int taxiId = buffer.getInt();
+                Location location = new Location(buffer.getDouble(), buffer.getDouble());
+                messagesReceived.incrementAndGet();
+                listener.onTaxi(inbound.peer, taxiId, location);
+                return;
+            }
+            case DONE:
+                messagesReceived.incrementAndGet();
+                listener.onDone(inbound.peer);
+                return;
+            case WANTED:
+                messagesReceived.incrementAndGet();
+                listener.onWanted(inbound.peer, buffer.getInt());
+                return;
+            default:
+                throw new IOException("Unknown message type " + type);
+        }
+    }
+
+    private void fail(Outbox outbox, IOException cause) {
+        System.err.printf("[Cluster] Node %d lost link to node %d: %s\n", node, outbox.peer, cause.getMessage());
+        outbox.lock.lock();
+        try {
+            outbox.failed = true;
+            dropped.addAndGet(outbox.fillingCount);
+            outbox.fillingCount = 0;
+            outbox.writable.signalAll();
+        } finally {
+            outbox.lock.unlock();
+        }
+        if (outbox.channel != null) {
+            closeQuietly(outbox.channel);
+        }
+    }
+
+    private void shutdown() {
+        for (Outbox outbox : outboxes) {
+            if (outbox != null) {
+                outbox.lock.lock();
+                try {
+                    outbox.failed = true;
+                    outbox.writable.signalAll();
+                } finally {
+                    outbox.lock.unlock();
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key.channel());
+        }
+        closeQuietly(selector);
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            System.err.printf("[Cluster] Node %d could not close a channel: %s\n", node, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,363 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ClusterNode implements ClusterLink.Listener {
+    private static final double MAP_SIZE = 100.0;
+    private static final String NODES = "nodes";
+    private static final String NODE = "node";
+    private static final String CLUSTER_PORT = "clusterPort";
+    private static final String CLUSTER_ZONES = "clusterZones";
+    private static final String RATE = "rate";
+    private static final String SECONDS = "seconds";
+    private static final int DEFAULT_PORT = 19_000;
+    private static final int DEFAULT_ZONES_PER_SIDE = 8;
+    private static final int ID_BLOCK = 1 << 26;
+    private static final long POLL_MILLIS = 1;
+    private static final long QUIET_MILLIS = 500;
+    private static final long CONNECT_WAIT_SECONDS = 30;
+    private static final long WANTED_INTERVAL_MILLIS = 10;
+    private static final int LEND_BATCH = 64;
+    private static final String RESULT = "[Cluster] Result";
+
+    private final int node;
+    private final int nodes;
+    private final ClusterPartition partition;
+    private final Dispatcher dispatcher;
+    private final BlockingQueue<RideRequest> inbox;
+    private final ConcurrentLinkedQueue<Taxi> arrivals;
+    private final AtomicInteger peersDone;
+    private final AtomicLong received;
+    private final AtomicLong adopted;
+    private final AtomicIntegerArray wanted;
+    private volatile long lastActivityMillis;
+    private ClusterLink link;
+    private long forwarded;
+    private long handedOff;
+    private long lent;
+    private long lastWantedMillis;
+    private long lastCompletionMillis;
+
+    private ClusterNode(int node, ClusterPartition partition, Dispatcher dispatcher) {
+        this.node = node;
+        this.nodes = partition.getNodes();
+        this.partition = partition;
+        this.dispatcher = dispatcher;
+        this.inbox = new LinkedBlockingQueue<>();
+        this.arrivals = new ConcurrentLinkedQueue<>();
+        this.peersDone = new AtomicInteger();
+        this.received = new AtomicLong();
+        this.adopted = new AtomicLong();
+        this.wanted = new AtomicIntegerArray(partition.getNodes());
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SimulationConfig config = SimulationConfig.fromArgs(args);
+        EventLog.setLevel(EventLog.Level.WARN);
+        FlightEvents.register();
+        if (config.has(NODE)) {
+            runNode(config);
+        } else {
+            launch(config, args);
+        }
+    }
+
+    private static void runNode(SimulationConfig config) throws IOException, InterruptedException {
+        int nodes = config.getInt(NODES, 2);
+        int node = config.getInt(NODE, 0);
+        int port = config.getInt(CLUSTER_PORT, DEFAULT_PORT);
+        double rate = config.getDouble(RATE, 50_000);
+        int seconds = config.getInt(SECONDS, 5);
+        int taxisPerNode = config.getInt(SimulationConfig.TAXIS, 5_000);
+        double minDistance = config.getDouble(SimulationConfig.MIN_DISTANCE, 20.0);
+        long seed = config.getLong(SimulationConfig.SEED, 42);
+        if (node < 0 || node >= nodes) {
+            throw new IllegalArgumentException("Node " + node + " is outside a cluster of " + nodes);
+        }
+
+        ClusterPartition partition = new ClusterPartition(MAP_SIZE, config.getInt(CLUSTER_ZONES, DEFAULT_ZONES_PER_SIDE), nodes);
+        Dispatcher dispatcher = new Dispatcher(new LinkedBlockingQueue<>());
+        Random random = new Random(seed);
+        for (int id = 1; id <= taxisPerNode * nodes; id++) {
+            Location start = new Location(random.nextDouble() * MAP_SIZE, random.nextDouble() * MAP_SIZE);
+            if (partition.ownerOf(start) == node) {
+                dispatcher.registerTaxi(new Taxi(id, start, dispatcher));
+            }
+        }
+        RideRequest.reserveIdsThrough(node * ID_BLOCK);
+
+        ClusterNode cluster = new ClusterNode(node, partition, dispatcher);
+        System.out.printf("[Cluster] Node %d of %d on port %d owns %d of %d zones and %d taxis\n",
+                node, nodes, port + node, partition.zonesOwnedBy(node), partition.getZoneCount(), dispatcher.getTaxiCount());
+        try (ClusterLink link = ClusterLink.open(node, nodes, port, cluster)) {
+            if (!link.awaitConnected(CONNECT_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Node " + node + " could not reach all " + nodes + " nodes");
+            }
+            cluster.link = link;
+            DemandModel demand = new DemandModel(MAP_SIZE, minDistance);
+            LoadGenerator generator = new LoadGenerator(cluster.inbox, demand, LoadGenerator.Profile.POISSON, rate, 1,
+                    0, TimeUnit.SECONDS.toMillis(seconds), seed + node);
+            cluster.run(generator);
+        }
+    }
+
+    private void run(LoadGenerator generator) throws InterruptedException {
+        Thread generatorThread = new Thread(generator, "LoadGenerator");
+        long startMillis = System.currentTimeMillis();
+        lastActivityMillis = startMillis;
+        lastCompletionMillis = startMillis;
+        generatorThread.start();
+
+        boolean doneSent = false;
+        while (true) {
+            adoptArrivals();
+            lendTaxis();
+            requestTaxis();
+            RideRequest request = inbox.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (request != null) {
+                route(request);
+                continue;
+            }
+            if (!doneSent && !generatorThread.isAlive() && inbox.isEmpty()) {
+                for (int peer = 0; peer < nodes; peer++) {
+                    if (peer != node) {
+                        link.sendDone(peer);
+                    }
+                }
+                doneSent = true;
+            }
+            if (doneSent && peersDone.get() == nodes - 1 && arrivals.isEmpty() && inbox.isEmpty()
+                    && System.currentTimeMillis() - lastActivityMillis >= QUIET_MILLIS) {
+                break;
+            }
+        }
+        EventLog.flush();
+
+        LatencyStats latency = dispatcher.getLatencyStats();
+        System.out.printf(Locale.ROOT, "%s node=%d generated=%d forwarded=%d received=%d completed=%d waiting=%d"
+                        + " handedOff=%d lent=%d adopted=%d taxis=%d lost=%d messages=%d frames=%d writes=%d bytes=%d"
+                        + " elapsedMillis=%d p99WaitMillis=%d p99DispatchMicros=%.1f\n",
+                RESULT, node, generator.getGenerated(), forwarded, received.get(), dispatcher.getCompletedRides(),
+                dispatcher.getPendingOrders(), handedOff, lent, adopted.get(), dispatcher.getTaxiCount(),
+                link.getDropped(), link.getMessagesSent(), link.getFramesSent(), link.getWriteCalls(),
+                link.getBytesSent(), Math.max(1, lastCompletionMillis - startMillis),
+                latency.getWaitMillis().valueAtPercentile(99),
+                latency.getDispatchNanos().valueAtPercentile(99) / 1000.0);
+    }
+
+    private void route(RideRequest request) throws InterruptedException {
+        lastActivityMillis = System.currentTimeMillis();
+        int owner = partition.ownerOf(request.getPickupLocation());
+        if (owner == node) {
+            complete(dispatcher.dispatch(request));
+        } else if (link.sendRequest(owner, request)) {
+            forwarded++;
+        }
+    }
+
+    private void adoptArrivals() throws InterruptedException {
+        Taxi taxi;
+        while ((taxi = arrivals.poll()) != null) {
+            dispatcher.adoptTaxi(taxi);
+            complete(taxi);
+        }
+    }
+
+    private void lendTaxis() throws InterruptedException {
+        for (int peer = 0; peer < nodes; peer++) {
+            int requested = wanted.getAndSet(peer, 0);
+            if (requested == 0) {
+                continue;
+            }
+            int spare = Math.min(requested, dispatcher.getAvailableTaxiCount() / 2);
+            Location anchor = partition.anchorOf(peer);
+            for (int i = 0; i < spare; i++) {
+                Taxi taxi = dispatcher.handOffNearestTaxi(anchor);
+                if (taxi == null) {
+                    break;
+                }
+                if (link.sendTaxi(peer, taxi.getId(), taxi.getCurrentLocation())) {
+                    lent++;
+                }
+            }
+        }
+    }
+
+    private void requestTaxis() throws InterruptedException {
+        int pending = dispatcher.getPendingOrders();
+        long now = System.currentTimeMillis();
+        if (pending == 0 || nodes == 1 || now - lastWantedMillis < WANTED_INTERVAL_MILLIS
+                || dispatcher.getAvailableTaxiCount() > 0) {
+            return;
+        }
+        lastWantedMillis = now;
+        int share = (Math.min(pending, LEND_BATCH) + nodes - 2) / (nodes - 1);
+        for (int peer = 0; peer < nodes; peer++) {
+            if (peer != node) {
+                link.sendWanted(peer, share);
+            }
+        }
+    }
+
+    private void complete(Taxi taxi) throws InterruptedException {
+        if (taxi == null) {
+            return;
+        }
+        while (taxi.getState() == Taxi.ASSIGNED) {
+            RideRequest ride = taxi.getCurrentRequest();
+            taxi.arriveAt(ride.getDestination());
+            taxi.completeRide(ride);
+            lastCompletionMillis = System.currentTimeMillis();
+        }
+
+        Location location = taxi.getCurrentLocation();
+        int owner = partition.ownerOf(location);
+        if (owner != node && dispatcher.handOffTaxi(taxi)) {
+            if (link.sendTaxi(owner, taxi.getId(), location)) {
+                handedOff++;
+            }
+        }
+    }
+
+    @Override
+    public void onRequest(int from, RideRequest request) {
+        received.incrementAndGet();
+        lastActivityMillis = System.currentTimeMillis();
+        inbox.offer(request);
+    }
+
+    @Override
+    public void onTaxi(int from, int taxiId, Location location) {
+        adopted.incrementAndGet();
+        lastActivityMillis = System.currentTimeMillis();
+        arrivals.offer(new Taxi(taxiId, location, dispatcher));
+    }
+
+    @Override
+    public void onDone(int from) {
+        peersDone.incrementAndGet();
+    }
+
+    @Override
+    public void onWanted(int from, int taxis) {
+        wanted.accumulateAndGet(from, taxis, Math::max);
+    }
+
+    private static void launch(SimulationConfig config, String[] args) throws IOException, InterruptedException {
+        int[] clusterSizes = config.getIntList(NODES, 2);
+        double rate = config.getDouble(RATE, 50_000);
+        int port = config.getInt(CLUSTER_PORT, DEFAULT_PORT);
+
+        System.out.println("CLUSTER SCALING TEST\n");
+        System.out.printf("Offered: %.0f req/s per node | Duration: %d s | Taxis: %d per node | Zones: %d | Base port: %d\n\n",
+                rate, config.getInt(SECONDS, 5), config.getInt(SimulationConfig.TAXIS, 5_000),
+                config.getInt(CLUSTER_ZONES, DEFAULT_ZONES_PER_SIDE) * config.getInt(CLUSTER_ZONES, DEFAULT_ZONES_PER_SIDE), port);
+
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ClusterNode.class.getName());
+        for (String arg : args) {
+            if (!arg.startsWith("--" + NODES + "=")) {
+                command.add(arg);
+            }
+        }
+
+        List<String> rows = new ArrayList<>();
+        double baseline = 0;
+        for (int nodes : clusterSizes) {
+            List<Process> processes = new ArrayList<>(nodes);
+            for (int node = 0; node < nodes; node++) {
+                List<String> nodeCommand = new ArrayList<>(command);
+                nodeCommand.add("--" + NODES + "=" + nodes);
+                nodeCommand.add("--" + NODE + "=" + node);
+                processes.add(new ProcessBuilder(nodeCommand).redirectErrorStream(true).start());
+            }
+
+            List<Map<String, String>> results = new ArrayList<>(nodes);
+            for (Process process : processes) {
+                Map<String, String> result = new HashMap<>();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(RESULT)) {
+                            parseResult(line, result);
+                        } else {
+                            System.out.println(line);
+                        }
+                    }
+                }
+                int exit = process.waitFor();
+                if (exit != 0 || result.isEmpty()) {
+                    throw new IllegalStateException("Cluster node exited with status " + exit + " and no result");
+                }
+                results.add(result);
+            }
+
+            long generated = sum(results, "generated");
+            long completed = sum(results, "completed");
+            long elapsedMillis = max(results, "elapsedMillis");
+            double throughput = completed * 1000.0 / elapsedMillis;
+            long frames = sum(results, "frames");
+            if (baseline == 0) {
+                baseline = throughput / nodes;
+            }
+            rows.add(String.format(Locale.ROOT, "%-6d %12.0f %12.0f %8.2fx %9.1f%% %9.1f%% %6d %10.1f %8d %9d %8d",
+                    nodes, rate * nodes, throughput, throughput / baseline,
+                    100.0 * sum(results, "forwarded") / Math.max(1, generated),
+                    100.0 * sum(results, "handedOff") / Math.max(1, completed), sum(results, "lent"),
+                    frames == 0 ? 0 : (double) sum(results, "messages") / frames,
+                    sum(results, "writes"), sum(results, "waiting"), max(results, "p99WaitMillis")));
+            System.out.println();
+        }
+
+        System.out.printf("%-6s %12s %12s %9s %10s %10s %6s %10s %8s %9s %8s\n", "Nodes", "Offered/s", "Rides/s",
+                "Scaling", "Forwarded", "Handoffs", "Lent", "Msgs/frame", "Writes", "Waiting", "p99 ms");
+        for (String row : rows) {
+            System.out.println(row);
+        }
+    }
+
+    private static void parseResult(String line, Map<String, String> result) {
+        for (String field : line.substring(RESULT.length()).trim().split(" ")) {
+            int separator = field.indexOf('=');
+            if (separator > 0) {
+                result.put(field.substring(0, separator), field.substring(separator + 1));
+            }
+        }
+    }
+
+    private static long sum(List<Map<String, String>> results, String key) {
+        long total = 0;
+        for (Map<String, String> result : results) {
+            total += Long.parseLong(result.get(key));
+        }
+        return total;
+    }
+
+    private static long max(List<Map<String, String>> results, String key) {
+        long highest = 0;
+        for (Map<String, String> result : results) {
+            highest = Math.max(highest, Long.parseLong(result.get(key)));
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,66 @@
+class ClusterPartition {
+    private final double mapSize;
+    private final int zonesPerSide;
+    private final int nodes;
+
+    public ClusterPartition(double mapSize, int zonesPerSide, int nodes) {
+        if (nodes < 1 || zonesPerSide < 1 || zonesPerSide * zonesPerSide < nodes) {
+            throw new IllegalArgumentException("Cannot split " + zonesPerSide * zonesPerSide
+                    + " zones across " + nodes + " nodes");
+        }
+        this.mapSize = mapSize;
+        this.zonesPerSide = zonesPerSide;
+        this.nodes = nodes;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getZoneCount() {
+        return zonesPerSide * zonesPerSide;
+    }
+
+    public int zoneOf(Location location) {
+        int column = cell(location.getX());
+        int row = cell(location.getY());
+        return row * zonesPerSide + column;
+    }
+
+    public int ownerOfZone(int zone) {
+        return (int) ((long) zone * nodes / getZoneCount());
+    }
+
+    public int ownerOf(Location location) {
+        return ownerOfZone(zoneOf(location));
+    }
+
+    public Location anchorOf(int node) {
+        int first = -1;
+        int last = -1;
+        for (int zone = 0; zone < getZoneCount(); zone++) {
+            if (ownerOfZone(zone) == node) {
+                first = first < 0 ? zone : first;
+                last = zone;
+            }
+        }
+        int middle = (first + last) / 2;
+        double zoneSize = mapSize / zonesPerSide;
+        return new Location((middle % zonesPerSide + 0.5) * zoneSize, (middle / zonesPerSide + 0.5) * zoneSize);
+    }
+
+    public int zonesOwnedBy(int node) {
+        int owned = 0;
+        for (int zone = 0; zone < getZoneCount(); zone++) {
+            if (ownerOfZone(zone) == node) {
+                owned++;
+            }
+        }
+        return owned;
+    }
+
+    private int cell(double coordinate) {
+        int cell = (int) (coordinate / mapSize * zonesPerSide);
+        return Math.max(0, Math.min(zonesPerSide - 1, cell));
+    }
+}
@@ -1,20 +1,25 @@
 import java.util.Random;
-import java.util.concurrent.BlockingQueue;
 
 class CustomerGenerator implements Runnable {
-    private final BlockingQueue<RideRequest> requestQueue;
+    private final RideIntake intake;
     private final Random random;
     private volatile boolean running;
     private final int totalOrders;
     private final double minDistance;
+    private boolean invalidDistanceGenerated;
+    private volatile int createdOrders;
 
-    public CustomerGenerator(BlockingQueue<RideRequest> requestQueue) {
-        this(requestQueue, 10, 10.0);
+    public CustomerGenerator(RideIntake intake) {
+        this(intake, 10, 10.0);
     }
 
-    public CustomerGenerator(BlockingQueue<RideRequest> requestQueue, int totalOrders, double minDistance) {
-        this.requestQueue = requestQueue;
-        this.random = new Random();
+    public CustomerGenerator(RideIntake intake, int totalOrders, double minDistance) {
+        this(intake, totalOrders, minDistance, new Random());
+    }
+
+    public CustomerGenerator(RideIntake intake, int totalOrders, double minDistance, Random random) {
+        this.intake = intake;
+        this.random = random;
         this.running = true;
         this.totalOrders = totalOrders;
         this.minDistance = minDistance;
@@ -34,41 +39,71 @@ class CustomerGenerator implements Runnable {
         return new Location(x, y);
     }
 
+    long nextDelayMillis() {
+        return random.nextInt(1500) + 500;
+    }
+
+    RideRequest createRequest(long timestamp) {
+        final int MAX_ATTEMPTS = 1000;
+
+        Location pickup = generateRandomLocation();
+        Location destination = generateRandomLocation();
+        int attempts = 0;
+
+        while (pickup.distanceTo(destination) < minDistance && attempts < MAX_ATTEMPTS) {
+            destination = generateRandomLocation();
+            attempts++;
+
+            if (attempts >= MAX_ATTEMPTS) {
+                System.err.printf("[Generator] WARNING: Could not generate valid destination after %d attempts\n", MAX_ATTEMPTS);
+                invalidDistanceGenerated = true;
+                break;
+            }
+        }
+
+        return new RideRequest(pickup, destination, timestamp);
+    }
+
+    public int getTotalOrders() {
+        return totalOrders;
+    }
+
+    public int getCreatedOrders() {
+        return createdOrders;
+    }
+
+    public boolean isInvalidDistanceGenerated() {
+        return invalidDistanceGenerated;
+    }
+
     @Override
     public void run() {
         try {
             int requestCount = 0;
-            int attempts = 0;
-            final int MAX_ATTEMPTS = 1000;
 
             while (running && requestCount < totalOrders) {
-                Thread.sleep(random.nextInt(1500) + 500);
-
-                Location pickup = generateRandomLocation();
-                Location destination = generateRandomLocation();
-                attempts = 0;
-
-                while (pickup.distanceTo(destination) < minDistance && attempts < MAX_ATTEMPTS) {
-                    destination = generateRandomLocation();
-                    attempts++;
-
-                    if (attempts >= MAX_ATTEMPTS) {
-                        System.err.printf("[Generator] WARNING: Could not generate valid destination after %d attempts\n", MAX_ATTEMPTS);
-                        break;
-                    }
+                Thread.sleep(nextDelayMillis());
+
+                RideRequest request = createRequest(System.currentTimeMillis());
+                FlightEvents.RideEnqueued enqueued = new FlightEvents.RideEnqueued();
+                enqueued.begin();
+                boolean accepted = intake.submit(request, RideIntake.Lane.STANDARD);
+                if (enqueued.shouldCommit()) {
+                    enqueued.requestId = request.getId();
+                    enqueued.rideDistance = request.getRideDistance();
+                    enqueued.accepted = accepted;
+                    enqueued.commit();
                 }
-
-                RideRequest request = new RideRequest(pickup, destination);
-                requestQueue.put(request);
                 requestCount++;
+                createdOrders = requestCount;
 
-                System.out.printf("[Generator] Created order #%d (%d/%d) distance: %.2f\n",
-                        request.getId(), requestCount, totalOrders, pickup.distanceTo(destination));
+                EventLog.log(LogEvent.GENERATOR_CREATED,
+                        request.getId(), requestCount, totalOrders, request.getRideDistance());
             }
 
-            System.out.printf("[Generator] Finished creating %d orders\n", totalOrders);
+            EventLog.log(LogEvent.GENERATOR_FINISHED, totalOrders);
 
-            if (attempts >= MAX_ATTEMPTS) {
+            if (invalidDistanceGenerated) {
                 System.err.println("[Generator] WARNING: Some orders may have invalid distances");
             }
 
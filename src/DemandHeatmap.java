@@ -0,0 +1,55 @@
+class DemandHeatmap {
+    private static final double LN2 = Math.log(2);
+
+    private final double mapSize;
+    private final int cellsPerSide;
+    private final double cellSize;
+    private final double halfLifeMillis;
+    private final double[] weights;
+    private final long[] updatedAtMillis;
+
+    DemandHeatmap(double mapSize, int cellsPerSide, long halfLifeMillis) {
+        this.mapSize = mapSize;
+        this.cellsPerSide = cellsPerSide;
+        this.cellSize = mapSize / cellsPerSide;
+        this.halfLifeMillis = halfLifeMillis;
+        this.weights = new double[cellsPerSide * cellsPerSide];
+        this.updatedAtMillis = new long[cellsPerSide * cellsPerSide];
+    }
+
+    int cellCount() {
+        return weights.length;
+    }
+
+    void record(Location pickup, long nowMillis) {
+        int cell = cellOf(pickup);
+        weights[cell] = weightAt(cell, nowMillis) + 1;
+        updatedAtMillis[cell] = nowMillis;
+    }
+
+    double weightAt(int cell, long nowMillis) {
+        long age = nowMillis - updatedAtMillis[cell];
+        return age <= 0 ? weights[cell] : weights[cell] * Math.exp(-LN2 * age / halfLifeMillis);
+    }
+
+    double[] snapshot(long nowMillis) {
+        double[] decayed = new double[weights.length];
+        for (int cell = 0; cell < weights.length; cell++) {
+            decayed[cell] = weightAt(cell, nowMillis);
+        }
+        return decayed;
+    }
+
+    int cellOf(Location location) {
+        return coord(location.getY()) * cellsPerSide + coord(location.getX());
+    }
+
+    Location centerOf(int cell) {
+        return new Location((cell % cellsPerSide + 0.5) * cellSize, (cell / cellsPerSide + 0.5) * cellSize);
+    }
+
+    private int coord(double value) {
+        int coord = (int) (Math.max(0, Math.min(mapSize, value)) / cellSize);
+        return Math.min(cellsPerSide - 1, coord);
+    }
+}
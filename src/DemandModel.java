@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+class DemandModel {
+    private static final double HALF_PI = Math.PI / 2;
+
+    static final class Hotspot {
+        private final double x;
+        private final double y;
+        private final double radius;
+        private final double weight;
+
+        Hotspot(double x, double y, double radius, double weight) {
+            this.x = x;
+            this.y = y;
+            this.radius = radius;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(%.1f, %.1f) r=%.1f w=%.1f", x, y, radius, weight);
+        }
+    }
+
+    private final double mapSize;
+    private final double minDistance;
+    private final double hotspotShare;
+    private final Hotspot[] hotspots;
+    private final double[] cumulativeWeights;
+
+    public DemandModel(double mapSize, double minDistance) {
+        this(mapSize, minDistance, 0, new ArrayList<>());
+    }
+
+    public DemandModel(double mapSize, double minDistance, double hotspotShare, List<Hotspot> hotspots) {
+        this.mapSize = mapSize;
+        this.minDistance = minDistance;
+        this.hotspotShare = hotspots.isEmpty() ? 0 : hotspotShare;
+        this.hotspots = hotspots.toArray(new Hotspot[0]);
+        this.cumulativeWeights = new double[this.hotspots.length];
+
+        double total = 0;
+        for (int i = 0; i < this.hotspots.length; i++) {
+            total += this.hotspots[i].weight;
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    static List<Hotspot> defaultHotspots(double mapSize) {
+        List<Hotspot> hotspots = new ArrayList<>();
+        hotspots.add(new Hotspot(mapSize * 0.5, mapSize * 0.5, mapSize * 0.08, 3));
+        hotspots.add(new Hotspot(mapSize * 0.2, mapSize * 0.8, mapSize * 0.05, 1));
+        hotspots.add(new Hotspot(mapSize * 0.85, mapSize * 0.15, mapSize * 0.05, 1));
+        return hotspots;
+    }
+
+    public double getMinDistance() {
+        return minDistance;
+    }
+
+    public List<Hotspot> getHotspots() {
+        return List.of(hotspots);
+    }
+
+    Location samplePickup(SplittableRandom random) {
+        if (hotspotShare > 0 && random.nextDouble() < hotspotShare) {
+            Hotspot hotspot = pickHotspot(random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1]);
+            return new Location(clamp(hotspot.x + random.nextGaussian() * hotspot.radius),
+                    clamp(hotspot.y + random.nextGaussian() * hotspot.radius));
+        }
+        return new Location(random.nextDouble() * mapSize, random.nextDouble() * mapSize);
+    }
+
+    Location sampleDestination(Location pickup, SplittableRandom random) {
+        double px = pickup.getX();
+        double py = pickup.getY();
+        if (minDistance <= 0) {
+            return new Location(random.nextDouble() * mapSize, random.nextDouble() * mapSize);
+        }
+
+        double right = blockedHalfWidth(mapSize - px);
+        double top = blockedHalfWidth(mapSize - py);
+        double left = blockedHalfWidth(px);
+        double bottom = blockedHalfWidth(py);
+
+        double gap0 = Math.max(0, HALF_PI - right - top);
+        double gap1 = Math.max(0, HALF_PI - top - left);
+        double gap2 = Math.max(0, HALF_PI - left - bottom);
+        double gap3 = Math.max(0, HALF_PI - bottom - right);
+        double feasible = gap0 + gap1 + gap2 + gap3;
+        if (feasible <= 0) {
+            return farthestCorner(px, py);
+        }
+
+        double u = random.nextDouble() * feasible;
+        double angle;
+        if (u < gap0) {
+            angle = right + u;
+        } else if ((u -= gap0) < gap1) {
+            angle = HALF_PI + top + u;
+        } else if ((u -= gap1) < gap2) {
+            angle = Math.PI + left + u;
+        } else {
+            angle = 3 * HALF_PI + bottom + Math.min(u - gap2, gap3);
+        }
+
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double reach = Math.min(exitDistance(px, cos), exitDistance(py, sin));
+        double inner = minDistance * minDistance;
+        double radius = Math.sqrt(inner + random.nextDouble() * Math.max(0, reach * reach - inner));
+        return new Location(clamp(px + radius * cos), clamp(py + radius * sin));
+    }
+
+    boolean canReachMinDistance(Location pickup) {
+        double dx = Math.max(pickup.getX(), mapSize - pickup.getX());
+        double dy = Math.max(pickup.getY(), mapSize - pickup.getY());
+        return dx * dx + dy * dy >= minDistance * minDistance;
+    }
+
+    private double blockedHalfWidth(double distanceToEdge) {
+        return distanceToEdge >= minDistance ? 0 : Math.acos(distanceToEdge / minDistance);
+    }
+
+    private double exitDistance(double position, double direction) {
+        if (direction > 0) {
+            return (mapSize - position) / direction;
+        }
+        if (direction < 0) {
+            return -position / direction;
+        }
+        return Double.MAX_VALUE;
+    }
+
+    private Location farthestCorner(double px, double py) {
+        return new Location(px < mapSize / 2 ? mapSize : 0, py < mapSize / 2 ? mapSize : 0);
+    }
+
+    private Hotspot pickHotspot(double target) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (target < cumulativeWeights[i]) {
+                return hotspots[i];
+            }
+        }
+        return hotspots[hotspots.length - 1];
+    }
+
+    private double clamp(double value) {
+        return Math.max(0, Math.min(mapSize, value));
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+class DiscreteEventSimulation {
+    private enum EventType {
+        REQUEST_ARRIVAL,
+        DISPATCH_BATCH,
+        REBALANCE,
+        RIDE_STEP
+    }
+
+    private static final class SimEvent implements Comparable<SimEvent> {
+        private final long time;
+        private final long sequence;
+        private final EventType type;
+        private final Taxi taxi;
+
+        private SimEvent(long time, long sequence, EventType type, Taxi taxi) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.taxi = taxi;
+        }
+
+        @Override
+        public int compareTo(SimEvent other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final Dispatcher dispatcher;
+    private final CustomerGenerator generator;
+    private final TraceReader trace;
+    private final PriorityQueue<SimEvent> events;
+    private final List<RideRequest> pendingBatch;
+    private final List<Taxi> batchAssignments;
+    private boolean batchScheduled;
+    private long now;
+    private long sequence;
+    private int createdOrders;
+    private long processedEvents;
+    private long traceStart;
+
+    public DiscreteEventSimulation(Dispatcher dispatcher, CustomerGenerator generator) {
+        this(dispatcher, generator, null);
+    }
+
+    public DiscreteEventSimulation(Dispatcher dispatcher, TraceReader trace) {
+        this(dispatcher, null, trace);
+    }
+
+    private DiscreteEventSimulation(Dispatcher dispatcher, CustomerGenerator generator, TraceReader trace) {
+        this.dispatcher = dispatcher;
+        this.generator = generator;
+        this.trace = trace;
+        this.events = new PriorityQueue<>();
+        this.pendingBatch = new ArrayList<>();
+        this.batchAssignments = new ArrayList<>();
+        dispatcher.setClock(this::getSimulatedTimeMillis);
+    }
+
+    public long getSimulatedTimeMillis() {
+        return now;
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    void resume(List<Taxi> assignedTaxis) {
+        for (Taxi taxi : assignedTaxis) {
+            schedule(0, EventType.RIDE_STEP, taxi);
+        }
+    }
+
+    public void run() {
+        if (trace != null) {
+            if (advanceTrace()) {
+                traceStart = trace.getTimestamp();
+                schedule(0, EventType.REQUEST_ARRIVAL, null);
+            }
+        } else if (generator.getTotalOrders() > 0) {
+            schedule(generator.nextDelayMillis(), EventType.REQUEST_ARRIVAL, null);
+        }
+
+        if (dispatcher.isRebalancing() && !events.isEmpty()) {
+            schedule(dispatcher.getRebalanceIntervalMillis(), EventType.REBALANCE, null);
+        }
+
+        while (!events.isEmpty()) {
+            SimEvent event = events.poll();
+            if (event.type == EventType.REBALANCE && events.isEmpty()) {
+                break;
+            }
+            now = event.time;
+            processedEvents++;
+            handle(event);
+        }
+
+        if (trace != null) {
+            EventLog.log(LogEvent.TRACE_FINISHED, trace.getRecords(), trace.getSkippedLines());
+        }
+        EventLog.log(LogEvent.SIMULATION_FINISHED, processedEvents, now / 1000.0);
+    }
+
+    private void handle(SimEvent event) {
+        switch (event.type) {
+            case REQUEST_ARRIVAL:
+                onRequestArrival();
+                break;
+            case DISPATCH_BATCH:
+                onDispatchBatch();
+                break;
+            case REBALANCE:
+                dispatcher.rebalanceIdleTaxis(now);
+                schedule(dispatcher.getRebalanceIntervalMillis(), EventType.REBALANCE, null);
+                break;
+            case RIDE_STEP:
+                onRideStep(event.taxi);
+                break;
+        }
+    }
+
+    private void onRequestArrival() {
+        RideRequest request = trace != null ? trace.toRequest(now) : generator.createRequest(now);
+        createdOrders++;
+        if (generator != null) {
+            EventLog.log(LogEvent.GENERATOR_CREATED,
+                    request.getId(), createdOrders, generator.getTotalOrders(), request.getRideDistance());
+        }
+
+        if (dispatcher.isBatching()) {
+            pendingBatch.add(request);
+            if (!batchScheduled) {
+                batchScheduled = true;
+                schedule(dispatcher.getBatchWindowMillis(), EventType.DISPATCH_BATCH, null);
+            }
+        } else {
+            Taxi taxi = dispatcher.dispatch(request, now);
+            if (taxi == null) {
+                dispatcher.notifyNoTaxiAvailable(request);
+            } else if (taxi.getCurrentRequest() == request) {
+                onRideStep(taxi);
+            }
+        }
+
+        if (trace != null) {
+            if (advanceTrace()) {
+                schedule(Math.max(0, trace.getTimestamp() - traceStart - now), EventType.REQUEST_ARRIVAL, null);
+            }
+        } else if (createdOrders < generator.getTotalOrders()) {
+            schedule(generator.nextDelayMillis(), EventType.REQUEST_ARRIVAL, null);
+        }
+    }
+
+    private boolean advanceTrace() {
+        try {
+            return trace.advance();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void onDispatchBatch() {
+        batchScheduled = false;
+
+        for (int fromIndex = 0; fromIndex < pendingBatch.size(); fromIndex += dispatcher.getMaxBatchSize()) {
+            int toIndex = Math.min(pendingBatch.size(), fromIndex + dispatcher.getMaxBatchSize());
+            List<RideRequest> batch = new ArrayList<>(pendingBatch.subList(fromIndex, toIndex));
+            dispatcher.dispatchBatch(batch, now, batchAssignments);
+            for (Taxi taxi : batchAssignments) {
+                onRideStep(taxi);
+            }
+            batchAssignments.clear();
+        }
+        pendingBatch.clear();
+    }
+
+    private void onRideStep(Taxi taxi) {
+        long delay = taxi.advanceRide();
+        if (delay >= 0) {
+            schedule(delay, EventType.RIDE_STEP, taxi);
+        } else if (taxi.getState() == Taxi.ASSIGNED) {
+            onRideStep(taxi);
+        }
+    }
+
+    private void schedule(long delayMillis, EventType type, Taxi taxi) {
+        events.add(new SimEvent(now + delayMillis, sequence++, type, taxi));
+    }
+}
@@ -0,0 +1,538 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+public class DispatchBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+    private static final int OPS_PER_CALL = 1024;
+    private static final int[] FLEET_SIZES = {100, 1_000, 10_000, 100_000};
+    private static final double[] AVAILABILITY_RATIOS = {1.0, 0.5, 0.1};
+    private static final int[] SCAN_FLEET_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int[] ROUTED_FLEET_SIZES = {1_000, 10_000};
+    private static final int[] SNAPSHOT_FLEET_SIZES = {1_000, 10_000, 100_000};
+    private static final int ROUTE_CACHE_SIZE = 65_536;
+    private static final int JOURNAL_RECORDS_PER_TRIAL = 1 << 20;
+    private static final int HISTORY_ROWS_PER_TRIAL = 1 << 20;
+    private static final int HISTORY_SCAN_ROWS = 1 << 21;
+    private static final int HISTORY_TAXIS = 10_000;
+    private static final int HISTORY_ZONES_PER_SIDE = 16;
+    private static final int CONTENDED_TAXIS = 4;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static volatile long blackhole;
+
+    private interface Operation {
+        long run(int count);
+    }
+
+    private interface Trial {
+        long[] run(long durationMillis) throws InterruptedException;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+        String only = args.length > 1 ? args[1] : "";
+        EventLog.setLevel(EventLog.Level.WARN);
+
+        System.out.println("DISPATCH HOT PATH BENCHMARK\n");
+        System.out.printf("Warmup: %d x %d ms | Measurement: %d x %d ms | Contending threads: %d | Fleet scan: %s\n\n",
+                WARMUP_ITERATIONS, ITERATION_MILLIS, MEASUREMENT_ITERATIONS, ITERATION_MILLIS, threads,
+                FleetStore.scanName());
+        System.out.printf("%-28s %-22s %12s %10s %14s %10s %6s %8s\n",
+                "Benchmark", "Params", "ns/op", "error", "ops/s", "B/op", "GCs", "GC ms");
+
+        if (only.isEmpty() || only.equals("distance")) {
+            benchmarkDistance();
+        }
+        if (only.isEmpty() || only.equals("nearest")) {
+            benchmarkNearestTaxi();
+        }
+        if (only.isEmpty() || only.equals("routing")) {
+            benchmarkRouting();
+        }
+        if (only.isEmpty() || only.equals("scan")) {
+            benchmarkFleetScan();
+        }
+        if (only.isEmpty() || only.equals("assign")) {
+            benchmarkContendedAssign(threads);
+        }
+        if (only.isEmpty() || only.equals("handoff")) {
+            benchmarkQueueHandoff();
+        }
+        if (only.isEmpty() || only.equals("journal")) {
+            benchmarkJournal();
+        }
+        if (only.isEmpty() || only.equals("snapshot")) {
+            benchmarkSnapshot();
+        }
+        if (only.isEmpty() || only.equals("history")) {
+            benchmarkHistory();
+        }
+    }
+
+    private static void benchmarkDistance() throws InterruptedException {
+        Random random = new Random(42);
+        Location[] from = randomLocations(random, OPS_PER_CALL);
+        Location[] to = randomLocations(random, OPS_PER_CALL);
+
+        measure("Location.distanceTo", "-", count -> {
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += from[i & (OPS_PER_CALL - 1)].distanceTo(to[(i * 7) & (OPS_PER_CALL - 1)]);
+            }
+            return Double.doubleToRawLongBits(sum);
+        });
+    }
+
+    private static void benchmarkNearestTaxi() throws InterruptedException {
+        for (int fleetSize : FLEET_SIZES) {
+            for (double ratio : AVAILABILITY_RATIOS) {
+                Random random = new Random(42);
+                Dispatcher dispatcher = new Dispatcher(new LinkedBlockingQueue<>());
+                for (int i = 1; i <= fleetSize; i++) {
+                    dispatcher.registerTaxi(new Taxi(i, randomLocation(random), dispatcher));
+                }
+
+                int target = Math.max(1, (int) (fleetSize * ratio));
+                while (dispatcher.getAvailableTaxiCount() > target) {
+                    RideRequest request = new RideRequest(randomLocation(random), randomLocation(random), 0);
+                    dispatcher.dispatch(request, 0);
+                }
+
+                Location[] queries = randomLocations(random, OPS_PER_CALL);
+                measure("findNearestAvailableTaxi", String.format("%d taxis, %.0f%%", fleetSize, ratio * 100), count -> {
+                    long sum = 0;
+                    for (int i = 0; i < count; i++) {
+                        sum += dispatcher.findNearestAvailableTaxi(queries[i & (OPS_PER_CALL - 1)]).getId();
+                    }
+                    return sum;
+                });
+            }
+        }
+    }
+
+    private static void benchmarkRouting() throws InterruptedException {
+        Random random = new Random(42);
+        Location[] from = randomLocations(random, OPS_PER_CALL);
+        Location[] to = randomLocations(random, OPS_PER_CALL);
+
+        for (int cacheSize : new int[] {0, ROUTE_CACHE_SIZE}) {
+            RoadNetwork roads = new RoadNetwork(100.0, 50, 5, 0.15, 42, cacheSize);
+            measure("RoadNetwork.travelSeconds", cacheSize == 0 ? "A*, no cache" : "A*, LRU cache", count -> {
+                double sum = 0;
+                for (int i = 0; i < count; i++) {
+                    sum += roads.travelSeconds(from[i & (OPS_PER_CALL - 1)], to[(i * 7) & (OPS_PER_CALL - 1)]);
+                }
+                return Double.doubleToRawLongBits(sum);
+            });
+        }
+
+        for (int fleetSize : ROUTED_FLEET_SIZES) {
+            for (int cacheSize : new int[] {0, ROUTE_CACHE_SIZE}) {
+                Dispatcher dispatcher = new Dispatcher(new LinkedBlockingQueue<>());
+                dispatcher.setTravelModel(new RoadNetwork(100.0, 50, 5, 0.15, 42, cacheSize));
+                for (int i = 1; i <= fleetSize; i++) {
+                    dispatcher.registerTaxi(new Taxi(i, randomLocation(random), dispatcher));
+                }
+
+                Location[] queries = randomLocations(random, OPS_PER_CALL);
+                measure("findNearestAvailableTaxi", String.format("roads, %d taxis, %s", fleetSize,
+                        cacheSize == 0 ? "cold" : "cached"), count -> {
+                    long sum = 0;
+                    for (int i = 0; i < count; i++) {
+                        sum += dispatcher.findNearestAvailableTaxi(queries[i & (OPS_PER_CALL - 1)]).getId();
+                    }
+                    return sum;
+                });
+            }
+        }
+    }
+
+    private static void benchmarkFleetScan() throws InterruptedException {
+        for (int fleetSize : SCAN_FLEET_SIZES) {
+            Random random = new Random(42);
+            FleetStore store = new FleetStore();
+            TaxiGrid grid = new TaxiGrid(100.0, 64);
+            for (int i = 1; i <= fleetSize; i++) {
+                Taxi taxi = new Taxi(i, randomLocation(random), null);
+                store.track(taxi);
+                grid.add(taxi, taxi.getCurrentLocation());
+            }
+
+            Location[] queries = randomLocations(random, OPS_PER_CALL);
+            for (int i = 0; i < 100; i++) {
+                Taxi scanned = store.nearestAvailable(queries[i]);
+                Taxi indexed = grid.nearest(queries[i]);
+                if (scanned.distanceTo(queries[i]) != indexed.distanceTo(queries[i])) {
+                    System.err.printf("[Benchmark] WARNING: Fleet scan and grid disagree for query %s\n", queries[i]);
+                    break;
+                }
+            }
+
+            int queriesPerCall = Math.max(1, OPS_PER_CALL * 1_000 / fleetSize);
+            measure("FleetStore.nearestAvailable", String.format("%d taxis", fleetSize), queriesPerCall, count -> {
+                long sum = 0;
+                for (int i = 0; i < count; i++) {
+                    sum += store.nearestAvailable(queries[i & (OPS_PER_CALL - 1)]).getId();
+                }
+                return sum;
+            });
+        }
+    }
+
+    private static void benchmarkContendedAssign(int threadCount) throws InterruptedException {
+        Random random = new Random(42);
+        Dispatcher dispatcher = new Dispatcher(new LinkedBlockingQueue<>());
+        Taxi[] taxis = new Taxi[CONTENDED_TAXIS];
+        for (int i = 0; i < taxis.length; i++) {
+            taxis[i] = new Taxi(i + 1, randomLocation(random), dispatcher);
+            dispatcher.registerTaxi(taxis[i]);
+        }
+
+        measureConcurrent("Taxi.assignRequest", String.format("%d threads, %d taxis", threadCount, taxis.length),
+                threadCount, count -> {
+                    ThreadLocalRandom localRandom = ThreadLocalRandom.current();
+                    RideRequest request = new RideRequest(randomLocation(localRandom), randomLocation(localRandom), 0);
+                    long won = 0;
+                    for (int i = 0; i < count; i++) {
+                        Taxi taxi = taxis[localRandom.nextInt(taxis.length)];
+                        if (taxi.assignRequest(request)) {
+                            taxi.completeRide(request);
+                            won++;
+                        }
+                    }
+                    return won;
+                });
+    }
+
+    private static void benchmarkQueueHandoff() throws InterruptedException {
+        Random random = new Random(42);
+        RideRequest[] requests = new RideRequest[OPS_PER_CALL];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = new RideRequest(randomLocation(random), randomLocation(random), 0);
+        }
+        RideRequest poison = new RideRequest(randomLocation(random), randomLocation(random), 0);
+
+        measureTrial("LinkedBlockingQueue handoff", "1 producer, 1 consumer", durationMillis -> {
+            BlockingQueue<RideRequest> queue = new LinkedBlockingQueue<>();
+            long[] producerBytes = new long[1];
+            long[] handoffs = new long[1];
+            long[] consumerBytes = new long[1];
+            long deadline = System.nanoTime() + durationMillis * 1_000_000;
+
+            Thread producer = new Thread(() -> {
+                long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+                try {
+                    int i = 0;
+                    while (System.nanoTime() < deadline) {
+                        for (int batch = 0; batch < 256; batch++) {
+                            queue.put(requests[i++ & (OPS_PER_CALL - 1)]);
+                        }
+                    }
+                    queue.put(poison);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                producerBytes[0] = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+            }, "Bench-Producer");
+
+            Thread consumer = new Thread(() -> {
+                long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+                long taken = 0;
+                long sum = 0;
+                try {
+                    while (true) {
+                        RideRequest request = queue.take();
+                        if (request == poison) {
+                            break;
+                        }
+                        sum += request.getId();
+                        taken++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                blackhole += sum;
+                handoffs[0] = taken;
+                consumerBytes[0] = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+            }, "Bench-Consumer");
+
+            producer.start();
+            consumer.start();
+            producer.join();
+            consumer.join();
+            return new long[] {handoffs[0], producerBytes[0] + consumerBytes[0]};
+        });
+    }
+
+    private static void benchmarkJournal() throws InterruptedException {
+        Random random = new Random(42);
+        RideRequest request = new RideRequest(randomLocation(random), randomLocation(random), 0);
+        Taxi taxi = new Taxi(1, randomLocation(random), null);
+
+        measureTrial("RideJournal append", "mmap, group commit", durationMillis -> {
+            try {
+                Path directory = Files.createTempDirectory("journal-bench");
+                Path path = directory.resolve("rides.journal");
+                long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+                long deadline = System.nanoTime() + durationMillis * 1_000_000;
+                long ops = 0;
+                try (RideJournal journal = RideJournal.open(path, Long.MAX_VALUE)) {
+                    while (ops < JOURNAL_RECORDS_PER_TRIAL && System.nanoTime() < deadline) {
+                        for (int i = 0; i < OPS_PER_CALL; i++) {
+                            journal.onAssigned(request, taxi, ops + i, 0);
+                        }
+                        ops += OPS_PER_CALL;
+                    }
+                }
+                long bytes = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        Files.delete(file);
+                    }
+                }
+                Files.delete(directory);
+                return new long[] {ops, bytes};
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void benchmarkSnapshot() throws InterruptedException {
+        for (int fleetSize : SNAPSHOT_FLEET_SIZES) {
+            Random random = new Random(42);
+            FleetStore store = new FleetStore();
+            for (int i = 1; i <= fleetSize; i++) {
+                store.track(new Taxi(i, randomLocation(random), null));
+            }
+            Location[] locations = randomLocations(random, OPS_PER_CALL);
+
+            measure("FleetStore.snapshot", String.format("%d taxis", fleetSize), 1,
+                    count -> store.snapshot(0).size());
+
+            Operation update = count -> {
+                int id = ThreadLocalRandom.current().nextInt(fleetSize) + 1;
+                for (int i = 0; i < count; i++) {
+                    store.updateLocation(id, locations[i & (OPS_PER_CALL - 1)]);
+                    id = id == fleetSize ? 1 : id + 1;
+                }
+                return id;
+            };
+            measure("FleetStore.updateLocation", String.format("%d taxis", fleetSize), update);
+
+            Thread poller = new Thread(() -> {
+                long taken = 0;
+                while (!Thread.currentThread().isInterrupted()) {
+                    taken += store.snapshot(0).size();
+                }
+                blackhole += taken;
+            }, "SnapshotPoller");
+            poller.setDaemon(true);
+            poller.start();
+            measure("FleetStore.updateLocation", String.format("%d taxis, polled", fleetSize), update);
+            poller.interrupt();
+            poller.join();
+        }
+    }
+
+    private static void benchmarkHistory() throws InterruptedException {
+        Random random = new Random(42);
+        RideRequest[] requests = new RideRequest[OPS_PER_CALL];
+        for (int i = 0; i < OPS_PER_CALL; i++) {
+            requests[i] = new RideRequest(randomLocation(random), randomLocation(random), i);
+        }
+        Taxi taxi = new Taxi(1, randomLocation(random), null);
+
+        measureTrial("RideHistory append", "off-heap columns", durationMillis -> {
+            RideHistory history = new RideHistory();
+            long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+            long deadline = System.nanoTime() + durationMillis * 1_000_000;
+            long ops = 0;
+            while (ops < HISTORY_ROWS_PER_TRIAL && System.nanoTime() < deadline) {
+                for (int i = 0; i < OPS_PER_CALL; i++) {
+                    history.onAssigned(requests[i], taxi, ops + i, 0);
+                    history.onCompleted(requests[i], taxi, ops + i + 1);
+                }
+                ops += OPS_PER_CALL;
+            }
+            return new long[] {ops, THREADS.getCurrentThreadAllocatedBytes() - startBytes};
+        });
+
+        RideHistory history = new RideHistory();
+        List<RideRequest> rides = new ArrayList<>(HISTORY_SCAN_ROWS);
+        Taxi[] taxis = new Taxi[HISTORY_TAXIS];
+        for (int i = 0; i < HISTORY_TAXIS; i++) {
+            taxis[i] = new Taxi(i + 1, randomLocation(random), null);
+        }
+        long hourMillis = 3_600_000;
+        for (int i = 0; i < HISTORY_SCAN_ROWS; i++) {
+            long requestedAt = (long) i * 24 * hourMillis / HISTORY_SCAN_ROWS;
+            RideRequest request = new RideRequest(randomLocation(random), randomLocation(random), requestedAt);
+            Taxi assigned = taxis[random.nextInt(HISTORY_TAXIS)];
+            history.onAssigned(request, assigned, requestedAt + 60_000,
+                    assigned.distanceTo(request.getPickupLocation()));
+            history.onCompleted(request, assigned, requestedAt + 900_000);
+            rides.add(request);
+        }
+        String params = String.format("%d rides", HISTORY_SCAN_ROWS);
+
+        measure("RideHistory.zoneDemand", params, 1,
+                count -> history.zoneDemand(HISTORY_ZONES_PER_SIDE, 100.0)[0]);
+        measure("zoneDemand", "on-heap RideRequest", 1, count -> {
+            long[] demand = new long[HISTORY_ZONES_PER_SIDE * HISTORY_ZONES_PER_SIDE];
+            double scale = HISTORY_ZONES_PER_SIDE / 100.0;
+            for (RideRequest ride : rides) {
+                Location pickup = ride.getPickupLocation();
+                int column = Math.min(HISTORY_ZONES_PER_SIDE - 1, (int) (pickup.getX() * scale));
+                int row = Math.min(HISTORY_ZONES_PER_SIDE - 1, (int) (pickup.getY() * scale));
+                demand[row * HISTORY_ZONES_PER_SIDE + column]++;
+            }
+            return demand[0];
+        });
+        measure("RideHistory.hourlyThroughput", params, 1,
+                count -> history.hourlyThroughput(0).length);
+        measure("RideHistory.taxiUtilization", params, 1,
+                count -> history.taxiUtilization(0, 24 * hourMillis).length);
+        blackhole += rides.size();
+    }
+
+    private static void measure(String name, String params, Operation operation) throws InterruptedException {
+        measure(name, params, OPS_PER_CALL, operation);
+    }
+
+    private static void measure(String name, String params, int opsPerCall,
+                                Operation operation) throws InterruptedException {
+        measureTrial(name, params, durationMillis -> {
+            long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+            long deadline = System.nanoTime() + durationMillis * 1_000_000;
+            long ops = 0;
+            long sink = 0;
+            while (System.nanoTime() < deadline) {
+                sink += operation.run(opsPerCall);
+                ops += opsPerCall;
+            }
+            blackhole += sink;
+            return new long[] {ops, THREADS.getCurrentThreadAllocatedBytes() - startBytes};
+        });
+    }
+
+    private static void measureConcurrent(String name, String params, int threadCount,
+                                          Operation operation) throws InterruptedException {
+        measureTrial(name, params, durationMillis -> {
+            long[] ops = new long[threadCount];
+            long[] bytes = new long[threadCount];
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>(threadCount);
+
+            for (int t = 0; t < threadCount; t++) {
+                int slot = t;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+                    long deadline = System.nanoTime() + durationMillis * 1_000_000;
+                    long count = 0;
+                    long sink = 0;
+                    while (System.nanoTime() < deadline) {
+                        sink += operation.run(OPS_PER_CALL);
+                        count += OPS_PER_CALL;
+                    }
+                    blackhole += sink;
+                    ops[slot] = count;
+                    bytes[slot] = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+                }, "Bench-" + t);
+                threads.add(thread);
+                thread.start();
+            }
+
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return new long[] {Arrays.stream(ops).sum(), Arrays.stream(bytes).sum()};
+        });
+    }
+
+    private static void measureTrial(String name, String params, Trial trial) throws InterruptedException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            trial.run(ITERATION_MILLIS);
+        }
+
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalNanos = 0;
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            long[] result = trial.run(ITERATION_MILLIS);
+            long elapsed = System.nanoTime() - start;
+            nanosPerOp[i] = result[0] == 0 ? 0 : (double) elapsed / result[0];
+            totalOps += result[0];
+            totalBytes += result[1];
+            totalNanos += elapsed;
+        }
+
+        double mean = Arrays.stream(nanosPerOp).average().orElse(0);
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = Math.sqrt(variance / Math.max(1, nanosPerOp.length - 1));
+
+        System.out.printf("%-28s %-22s %12.2f %10.2f %14.0f %10.1f %6d %8d\n",
+                name, params, mean, error,
+                totalNanos == 0 ? 0 : totalOps * 1e9 / totalNanos,
+                totalOps == 0 ? 0 : (double) totalBytes / totalOps,
+                gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static Location[] randomLocations(Random random, int count) {
+        Location[] locations = new Location[count];
+        for (int i = 0; i < count; i++) {
+            locations[i] = randomLocation(random);
+        }
+        return locations;
+    }
+
+    private static Location randomLocation(Random random) {
+        return new Location(random.nextDouble() * 100, random.nextDouble() * 100);
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+public class DispatchComparison {
+    private static final long REBALANCE_HALF_LIFE_MILLIS = 300_000;
+
+    private static final class Result {
+        private final int completed;
+        private final int pending;
+        private final double averageWaitSeconds;
+        private final double p99WaitSeconds;
+        private final double averagePickupDistance;
+        private final int chained;
+        private final int pooled;
+        private final int repositioned;
+        private final double p99PickupSeconds;
+        private final double distancePerRide;
+        private final double simulatedSeconds;
+
+        private Result(Dispatcher dispatcher, DiscreteEventSimulation simulation) {
+            this.completed = dispatcher.getCompletedRides();
+            this.pending = dispatcher.getPendingOrders();
+            this.averageWaitSeconds = dispatcher.getAveragePickupWaitMillis() / 1000.0;
+            this.p99WaitSeconds = dispatcher.getLatencyStats().getWaitMillis().valueAtPercentile(99) / 1000.0;
+            this.averagePickupDistance = dispatcher.getAveragePickupDistance();
+            this.chained = dispatcher.getChainedRides();
+            this.pooled = dispatcher.getPooledRides();
+            this.repositioned = dispatcher.getRepositionedTaxis();
+            this.p99PickupSeconds = dispatcher.getLatencyStats().getPickupMillis().valueAtPercentile(99) / 1000.0;
+            this.distancePerRide = completed == 0 ? 0 : dispatcher.getTotalDistanceDriven() / completed;
+            this.simulatedSeconds = simulation.getSimulatedTimeMillis() / 1000.0;
+        }
+
+        private double ridesPerHour() {
+            return simulatedSeconds == 0 ? 0 : completed * 3600.0 / simulatedSeconds;
+        }
+    }
+
+    public static void main(String[] args) {
+        int taxiCount = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        double minDistance = args.length > 2 ? Double.parseDouble(args[2]) : 20.0;
+        long windowMillis = args.length > 3 ? Long.parseLong(args[3]) : 200;
+        int maxBatchSize = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+        int poolCapacity = args.length > 6 ? Integer.parseInt(args[6]) : 4;
+        double maxDetour = args.length > 7 ? Double.parseDouble(args[7]) : 0.5;
+        long rebalanceMillis = args.length > 8 ? Long.parseLong(args[8]) : 30_000;
+        long maxPickupWaitMillis = args.length > 9 ? Long.parseLong(args[9]) : 120_000;
+        EventLog.setLevel(EventLog.Level.WARN);
+
+        System.out.println("GREEDY VS BATCHED VS ETA VS POOLED VS REBALANCED DISPATCH\n");
+        System.out.printf("Taxis: %d | Orders: %d | Min distance: %.1f | Window: %d ms | Max batch: %d | Seed: %d\n",
+                taxiCount, orders, minDistance, windowMillis, maxBatchSize, seed);
+        System.out.printf("Pool capacity: %d | Max detour: %.0f%% | Max pickup wait: %d ms | Rebalance interval: %d ms\n\n",
+                poolCapacity, maxDetour * 100, maxPickupWaitMillis, rebalanceMillis);
+
+        Result[] results = {
+                run(taxiCount, orders, minDistance, seed, dispatcher -> { }),
+                run(taxiCount, orders, minDistance, seed, dispatcher -> dispatcher.enableBatching(windowMillis, maxBatchSize)),
+                run(taxiCount, orders, minDistance, seed, Dispatcher::enableEtaDispatch),
+                run(taxiCount, orders, minDistance, seed, dispatcher -> dispatcher.enablePooling(poolCapacity, maxDetour, maxPickupWaitMillis)),
+                run(taxiCount, orders, minDistance, seed,
+                        dispatcher -> dispatcher.enableRebalancing(rebalanceMillis, REBALANCE_HALF_LIFE_MILLIS))
+        };
+
+        System.out.printf("%-24s %12s %12s %12s %12s %12s %12s %12s %12s %12s\n", "",
+                "Greedy", "Batched", "ETA", "Pooled", "Rebalanced",
+                "Batched chg", "ETA chg", "Pooled chg", "Rebal chg");
+        printRow("Completed rides", results, r -> r.completed);
+        printRow("Orders left waiting", results, r -> r.pending);
+        printRow("Avg pickup wait (s)", results, r -> r.averageWaitSeconds);
+        printRow("p99 assignment wait (s)", results, r -> r.p99WaitSeconds);
+        printRow("p99 pickup time (s)", results, r -> r.p99PickupSeconds);
+        printRow("Avg pickup distance", results, r -> r.averagePickupDistance);
+        printRow("Chained rides", results, r -> r.chained);
+        printRow("Pooled rides", results, r -> r.pooled);
+        printRow("Repositioned taxis", results, r -> r.repositioned);
+        printRow("Distance per ride", results, r -> r.distancePerRide);
+        printRow("Simulated time (s)", results, r -> r.simulatedSeconds);
+        printRow("Throughput (rides/h)", results, Result::ridesPerHour);
+    }
+
+    private static Result run(int taxiCount, int orders, double minDistance, long seed, Consumer<Dispatcher> strategy) {
+        Random random = new Random(seed);
+        Dispatcher dispatcher = new Dispatcher(new LinkedBlockingQueue<>());
+        strategy.accept(dispatcher);
+
+        for (int i = 1; i <= taxiCount; i++) {
+            Location start = new Location(random.nextDouble() * 100, random.nextDouble() * 100);
+            dispatcher.registerTaxi(new Taxi(i, start, dispatcher));
+        }
+
+        CustomerGenerator generator = new CustomerGenerator(null, orders, minDistance, new Random(seed + 1));
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation(dispatcher, generator);
+        simulation.run();
+        return new Result(dispatcher, simulation);
+    }
+
+    private static void printRow(String label, Result[] results, ToDoubleFunction<Result> metric) {
+        StringBuilder row = new StringBuilder(String.format("%-24s", label));
+        double baseline = metric.applyAsDouble(results[0]);
+        for (Result result : results) {
+            row.append(String.format(" %12.2f", metric.applyAsDouble(result)));
+        }
+        for (int i = 1; i < results.length; i++) {
+            row.append(String.format(" %+11.1f%%", change(baseline, metric.applyAsDouble(results[i]))));
+        }
+        System.out.println(row);
+    }
+
+    private static double change(double baseline, double value) {
+        return baseline == 0 ? 0 : (value - baseline) * 100.0 / baseline;
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class DispatchLoadTest {
+    private static final double MAP_SIZE = 100.0;
+    private static final double HOTSPOT_SHARE = 0.6;
+    private static final long SAMPLE_INTERVAL_MILLIS = 100;
+    private static final int STAGE_BUFFER = 256;
+
+    private static final class DispatchStage implements Flow.Subscriber<RideRequest>, Runnable {
+        private final Dispatcher dispatcher;
+        private final BlockingQueue<RideRequest> inbox;
+        private volatile Flow.Subscription subscription;
+
+        private DispatchStage(Dispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            this.inbox = new ArrayBlockingQueue<>(STAGE_BUFFER);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(STAGE_BUFFER);
+        }
+
+        @Override
+        public void onNext(RideRequest request) {
+            inbox.offer(request);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            System.err.println("[LoadTest] Intake failed: " + error);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        @Override
+        public void run() {
+            int consumed = 0;
+            try {
+                while (true) {
+                    dispatchAndComplete(dispatcher, inbox.take());
+                    if (++consumed == STAGE_BUFFER / 2) {
+                        subscription.request(consumed);
+                        consumed = 0;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int producers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        LoadGenerator.Profile profile = args.length > 3
+                ? LoadGenerator.Profile.valueOf(args[3].toUpperCase(Locale.ROOT))
+                : LoadGenerator.Profile.POISSON;
+        int taxiCount = args.length > 4 ? Integer.parseInt(args[4]) : 10_000;
+        int zonesPerSide = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        double minDistance = args.length > 6 ? Double.parseDouble(args[6]) : 20.0;
+        int intakeCapacity = args.length > 7 ? Integer.parseInt(args[7]) : 0;
+        long ttlMillis = args.length > 8 ? Long.parseLong(args[8]) : 1000;
+        double priorityShare = args.length > 9 ? Double.parseDouble(args[9]) : 0.1;
+        EventLog.setLevel(EventLog.Level.WARN);
+        FlightEvents.register();
+
+        System.out.println("OPEN-LOOP DISPATCH LOAD TEST\n");
+        System.out.printf("Offered: %.0f req/s (%s) | Duration: %d s | Producers: %d | Taxis: %d | Zones: %d | Min distance: %.1f\n\n",
+                rate, profile, seconds, producers, taxiCount, zonesPerSide * zonesPerSide, minDistance);
+        if (intakeCapacity > 0) {
+            System.out.printf("Intake: %d orders per lane | TTL: %d ms | Priority share: %.0f%%\n\n",
+                    intakeCapacity, ttlMillis, priorityShare * 100);
+        } else {
+            System.out.println("Intake: unbounded queue\n");
+        }
+
+        BlockingQueue<RideRequest> queue = new LinkedBlockingQueue<>();
+        Dispatcher dispatcher = zonesPerSide > 0
+                ? new ZonedDispatcher(new LinkedBlockingQueue<>(), zonesPerSide)
+                : new Dispatcher(new LinkedBlockingQueue<>());
+        Random random = new Random(42);
+        for (int i = 1; i <= taxiCount; i++) {
+            Location start = new Location(random.nextDouble() * MAP_SIZE, random.nextDouble() * MAP_SIZE);
+            dispatcher.registerTaxi(new Taxi(i, start, dispatcher));
+        }
+
+        DemandModel demand = new DemandModel(MAP_SIZE, minDistance, HOTSPOT_SHARE, DemandModel.defaultHotspots(MAP_SIZE));
+        RideIntake intake = intakeCapacity > 0
+                ? new RideIntake(intakeCapacity, ttlMillis, System::currentTimeMillis)
+                : null;
+        LoadGenerator generator = intake != null
+                ? new LoadGenerator(intake, priorityShare, demand, profile, rate, producers,
+                        0, TimeUnit.SECONDS.toMillis(seconds), 42)
+                : new LoadGenerator(queue, demand, profile, rate, producers,
+                        0, TimeUnit.SECONDS.toMillis(seconds), 42);
+
+        Thread consumer;
+        DispatchStage stage = null;
+        if (intake != null) {
+            stage = new DispatchStage(dispatcher);
+            intake.subscribe(stage);
+            consumer = new Thread(stage, "LoadTest-Dispatcher");
+        } else {
+            consumer = new Thread(() -> consume(dispatcher, queue), "LoadTest-Dispatcher");
+        }
+        Thread generatorThread = new Thread(generator, "LoadGenerator");
+        Runtime runtime = Runtime.getRuntime();
+        consumer.start();
+        generatorThread.start();
+
+        int maxBacklog = 0;
+        long peakHeap = 0;
+        while (generatorThread.isAlive()) {
+            generatorThread.join(SAMPLE_INTERVAL_MILLIS);
+            maxBacklog = Math.max(maxBacklog, backlog(queue, intake, stage));
+            peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+        }
+        if (intake != null) {
+            intake.close();
+        }
+        while (backlog(queue, intake, stage) > 0) {
+            Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+        }
+        consumer.interrupt();
+        consumer.join();
+        EventLog.flush();
+
+        LatencyStats latency = dispatcher.getLatencyStats();
+        System.out.printf("%-28s %12d\n", "Requests generated", generator.getGenerated());
+        System.out.printf("%-28s %12.0f\n", "Achieved rate (req/s)", generator.getAchievedRate());
+        System.out.printf("%-28s %12d\n", "Max producer lag (ms)", generator.getMaxLagMillis());
+        System.out.printf("%-28s %12d\n", "Max queue backlog", maxBacklog);
+        System.out.printf("%-28s %12d\n", "Peak heap used (MB)", peakHeap >> 20);
+        if (intake != null) {
+            for (RideIntake.Lane lane : RideIntake.Lane.values()) {
+                String name = lane.name().charAt(0) + lane.name().substring(1).toLowerCase(Locale.ROOT);
+                System.out.printf("%-28s %12d\n", name + " admitted", intake.getAdmitted(lane));
+                System.out.printf("%-28s %12d\n", name + " expired (TTL)", intake.getExpired(lane));
+                System.out.printf("%-28s %12d\n", name + " rejected (full)", intake.getRejected(lane));
+            }
+        }
+        System.out.printf("%-28s %12d\n", "Rides completed", dispatcher.getCompletedRides());
+        System.out.printf("%-28s %12d\n", "Orders left waiting", dispatcher.getPendingOrders());
+        System.out.println();
+        latency.printReport();
+    }
+
+    private static int backlog(BlockingQueue<RideRequest> queue, RideIntake intake, DispatchStage stage) {
+        return intake == null ? queue.size() : intake.getBuffered() + stage.inbox.size();
+    }
+
+    private static void consume(Dispatcher dispatcher, BlockingQueue<RideRequest> queue) {
+        try {
+            while (true) {
+                dispatchAndComplete(dispatcher, queue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void dispatchAndComplete(Dispatcher dispatcher, RideRequest request) {
+        Taxi taxi = dispatcher.dispatch(request);
+        while (taxi != null && taxi.getState() == Taxi.ASSIGNED) {
+            RideRequest ride = taxi.getCurrentRequest();
+            taxi.arriveAt(ride.getDestination());
+            taxi.completeRide(ride);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+class DispatchService implements RideListener {
+    private static final class Tracked {
+        private final CompletableFuture<RideOutcome> future;
+        private volatile int taxiId;
+        private volatile long assignedAt;
+        private volatile double pickupDistance;
+
+        private Tracked(CompletableFuture<RideOutcome> future) {
+            this.future = future;
+        }
+    }
+
+    private final Dispatcher dispatcher;
+    private final RideIntake intake;
+    private final Map<Integer, Tracked> tracked;
+    private final AtomicLong finishedRides;
+    private final AtomicLong shedRides;
+    private final ReentrantLock drainLock;
+    private final Condition progress;
+    private volatile RideListener downstream;
+    private volatile boolean shutdown;
+
+    public DispatchService(Dispatcher dispatcher, RideIntake intake) {
+        this.dispatcher = dispatcher;
+        this.intake = intake;
+        this.tracked = new ConcurrentHashMap<>();
+        this.finishedRides = new AtomicLong();
+        this.shedRides = new AtomicLong();
+        this.drainLock = new ReentrantLock();
+        this.progress = drainLock.newCondition();
+        dispatcher.setRideListener(this);
+        intake.setShedListener(this::onShed);
+    }
+
+    public void setRideListener(RideListener listener) {
+        this.downstream = listener;
+    }
+
+    public CompletableFuture<RideOutcome> submit(Location pickup, Location destination) {
+        return submit(new RideRequest(pickup, destination, dispatcher.currentTimeMillis()));
+    }
+
+    public CompletableFuture<RideOutcome> submit(RideRequest request) {
+        return submit(request, RideIntake.Lane.STANDARD);
+    }
+
+    public CompletableFuture<RideOutcome> submit(RideRequest request, RideIntake.Lane lane) {
+        CompletableFuture<RideOutcome> future = new CompletableFuture<>();
+        if (shutdown) {
+            future.completeExceptionally(new RejectedExecutionException("Dispatch service is shut down"));
+            return future;
+        }
+
+        tracked.put(request.getId(), new Tracked(future));
+        intake.offer(request, lane);
+        return future;
+    }
+
+    public int getOutstanding() {
+        return tracked.size();
+    }
+
+    public long getFinishedRides() {
+        return finishedRides.get();
+    }
+
+    public long getShedRides() {
+        return shedRides.get();
+    }
+
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public boolean awaitDrain(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitDrain(0, timeout, unit);
+    }
+
+    public boolean awaitDrain(long expectedRides, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        drainLock.lock();
+        try {
+            while (!tracked.isEmpty() || finishedRides.get() + shedRides.get() < expectedRides) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = progress.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public void onSubmitted(RideRequest request) {
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onSubmitted(request);
+        }
+    }
+
+    @Override
+    public void onAssigned(RideRequest request, Taxi taxi, long timeMillis, double pickupDistance) {
+        Tracked ride = tracked.get(request.getId());
+        if (ride != null) {
+            ride.taxiId = taxi.getId();
+            ride.assignedAt = timeMillis;
+            ride.pickupDistance = pickupDistance;
+        }
+
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onAssigned(request, taxi, timeMillis, pickupDistance);
+        }
+    }
+
+    @Override
+    public void onCompleted(RideRequest request, Taxi taxi, long timeMillis) {
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onCompleted(request, taxi, timeMillis);
+        }
+
+        Tracked ride = tracked.remove(request.getId());
+        finishedRides.incrementAndGet();
+        signalProgress();
+
+        if (ride != null) {
+            ride.future.complete(new RideOutcome(request, taxi.getId(), ride.assignedAt, timeMillis, ride.pickupDistance));
+        }
+    }
+
+    @Override
+    public void onShed(RideRequest request) {
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onShed(request);
+        }
+
+        Tracked ride = tracked.remove(request.getId());
+        shedRides.incrementAndGet();
+        signalProgress();
+
+        if (ride != null) {
+            ride.future.completeExceptionally(new RejectedExecutionException(
+                    "Order #" + request.getId() + " shed by admission control"));
+        }
+    }
+
+    private void signalProgress() {
+        drainLock.lock();
+        try {
+            progress.signalAll();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+}
@@ -1,87 +1,966 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 
-class Dispatcher implements Runnable {
-    private final List<Taxi> taxis;
+class Dispatcher implements Runnable, Flow.Subscriber<RideRequest> {
+    private static final double MAP_SIZE = 100.0;
+    private static final int GRID_CELLS_PER_SIDE = 64;
+    private static final int MAX_STATUS_LINES = 50;
+    private static final int PENDING_MATCH_WINDOW = 16;
+    private static final int BATCH_CANDIDATES_PER_REQUEST = 8;
+    private static final int HUNGARIAN_BATCH_LIMIT = 128;
+    private static final int FLEET_SCAN_LIMIT = 256;
+    private static final int ETA_CANDIDATES = 8;
+    private static final int POOL_CANDIDATES = 8;
+    private static final int ROUTE_CANDIDATES = 8;
+    private static final int DEMAND_CELLS_PER_SIDE = 5;
+    private static final int REBALANCE_CANDIDATES = 16;
+    private static final double REBALANCE_MIN_DEMAND = 1.0;
+    private static final int INTAKE_PREFETCH = 16;
+
+    private final ConcurrentSkipListMap<Integer, Taxi> taxis;
+    private final TaxiGrid availableTaxis;
+    private final TaxiGrid finishingTaxis;
+    private final TaxiGrid pooledTaxis;
     private final BlockingQueue<RideRequest> requestQueue;
     private final AtomicInteger completedRides;
+    private final TreeSet<RideRequest> pendingRequests;
+    private volatile int pendingCount;
     private final ReentrantLock dispatchLock;
+    private final AtomicInteger assignedRides;
+    private final AtomicInteger chainedRides;
+    private final AtomicInteger pooledRides;
+    private final AtomicLong totalPickupWaitMillis;
+    private final DoubleAdder totalPickupDistance;
+    private volatile long batchWindowMillis;
+    private volatile int maxBatchSize;
+    private volatile boolean etaDispatch;
+    private volatile int poolCapacity;
+    private volatile double maxDetour;
+    private volatile long maxPickupWaitMillis;
+    private volatile DemandHeatmap demand;
+    private volatile long rebalanceIntervalMillis;
+    private final AtomicInteger repositionedTaxis;
+    private volatile ZonedDispatcher zones;
+    private volatile LongSupplier clock;
+    private final LatencyStats latencyStats;
+    private final FleetStore fleetStore;
+    private volatile RideListener rideListener;
+    private volatile TravelModel travelModel;
+    private volatile Flow.Subscription intake;
+    private final AtomicLong intakeDemand;
+    private final AtomicInteger taxiCount;
+    private final AtomicInteger availableCount;
 
     public Dispatcher(BlockingQueue<RideRequest> requestQueue) {
-        this.taxis = new CopyOnWriteArrayList<>();
+        this(requestQueue, new LatencyStats(), new FleetStore());
+    }
+
+    Dispatcher(BlockingQueue<RideRequest> requestQueue, LatencyStats latencyStats, FleetStore fleetStore) {
+        this.taxis = new ConcurrentSkipListMap<>();
+        this.availableTaxis = new TaxiGrid(MAP_SIZE, GRID_CELLS_PER_SIDE);
+        this.finishingTaxis = new TaxiGrid(MAP_SIZE, GRID_CELLS_PER_SIDE);
+        this.pooledTaxis = new TaxiGrid(MAP_SIZE, GRID_CELLS_PER_SIDE);
         this.requestQueue = requestQueue;
         this.completedRides = new AtomicInteger(0);
+        this.pendingRequests = new TreeSet<>(Comparator.comparingLong(RideRequest::getTimestamp)
+                .thenComparingInt(RideRequest::getId));
         this.dispatchLock = new ReentrantLock();
+        this.assignedRides = new AtomicInteger(0);
+        this.chainedRides = new AtomicInteger(0);
+        this.pooledRides = new AtomicInteger(0);
+        this.repositionedTaxis = new AtomicInteger(0);
+        this.totalPickupWaitMillis = new AtomicLong(0);
+        this.totalPickupDistance = new DoubleAdder();
+        this.clock = System::currentTimeMillis;
+        this.latencyStats = latencyStats;
+        this.fleetStore = fleetStore;
+        this.travelModel = StraightLineTravel.INSTANCE;
+        this.intakeDemand = new AtomicLong();
+        this.taxiCount = new AtomicInteger(0);
+        this.availableCount = new AtomicInteger(0);
+    }
+
+    public LatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    FleetStore getFleetStore() {
+        return fleetStore;
+    }
+
+    public void setRideListener(RideListener rideListener) {
+        this.rideListener = rideListener;
+    }
+
+    public void setTravelModel(TravelModel travelModel) {
+        this.travelModel = travelModel;
+    }
+
+    TravelModel getTravelModel() {
+        return travelModel;
+    }
+
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    long currentTimeMillis() {
+        return clock.getAsLong();
+    }
+
+    public void enableBatching(long windowMillis, int maxBatchSize) {
+        this.batchWindowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public boolean isBatching() {
+        return batchWindowMillis > 0 && maxBatchSize > 1;
+    }
+
+    public long getBatchWindowMillis() {
+        return batchWindowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void enableEtaDispatch() {
+        this.etaDispatch = true;
+    }
+
+    public boolean isEtaDispatch() {
+        return etaDispatch;
+    }
+
+    public int getChainedRides() {
+        return chainedRides.get();
+    }
+
+    public void enablePooling(int capacity, double maxDetour, long maxPickupWaitMillis) {
+        this.maxDetour = maxDetour;
+        this.maxPickupWaitMillis = maxPickupWaitMillis;
+        this.poolCapacity = capacity;
+    }
+
+    public boolean isPooling() {
+        return poolCapacity > 1;
+    }
+
+    public int getPoolCapacity() {
+        return poolCapacity;
+    }
+
+    public double getMaxDetour() {
+        return maxDetour;
+    }
+
+    public long getMaxPickupWaitMillis() {
+        return maxPickupWaitMillis;
+    }
+
+    public int getPooledRides() {
+        return pooledRides.get();
+    }
+
+    public void enableRebalancing(long intervalMillis, long demandHalfLifeMillis) {
+        this.demand = new DemandHeatmap(MAP_SIZE, DEMAND_CELLS_PER_SIDE, demandHalfLifeMillis);
+        this.rebalanceIntervalMillis = intervalMillis;
+    }
+
+    public boolean isRebalancing() {
+        return demand != null && rebalanceIntervalMillis > 0;
+    }
+
+    public long getRebalanceIntervalMillis() {
+        return rebalanceIntervalMillis;
+    }
+
+    public int getRepositionedTaxis() {
+        return repositionedTaxis.get();
+    }
+
+    public double getTotalDistanceDriven() {
+        double total = 0;
+        for (Taxi taxi : taxis.values()) {
+            total += taxi.getDistanceDriven();
+        }
+        return total;
+    }
+
+    public int getAssignedRides() {
+        return assignedRides.get();
+    }
+
+    public double getAveragePickupWaitMillis() {
+        int assigned = getAssignedRides();
+        return assigned == 0 ? 0 : (double) getTotalPickupWaitMillis() / assigned;
+    }
+
+    public double getAveragePickupDistance() {
+        int assigned = getAssignedRides();
+        return assigned == 0 ? 0 : getTotalPickupDistance() / assigned;
+    }
+
+    long getTotalPickupWaitMillis() {
+        return totalPickupWaitMillis.get();
+    }
+
+    double getTotalPickupDistance() {
+        return totalPickupDistance.sum();
+    }
+
+    public int getTaxiCount() {
+        return taxiCount.get();
+    }
+
+    public int getAvailableTaxiCount() {
+        return availableCount.get();
+    }
+
+    public int getQueueSize() {
+        return requestQueue.size();
+    }
+
+    void submit(RideRequest request) throws InterruptedException {
+        requestQueue.put(request);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.intake = subscription;
+        requestFromIntake();
+    }
+
+    @Override
+    public void onNext(RideRequest request) {
+        intakeDemand.decrementAndGet();
+        requestQueue.offer(request);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        intake = null;
+        System.err.println("[Dispatcher] Ride intake failed: " + error);
+    }
+
+    @Override
+    public void onComplete() {
+        intake = null;
+    }
+
+    void requestFromIntake() {
+        Flow.Subscription subscription = intake;
+        if (subscription == null) {
+            return;
+        }
+
+        int prefetch = Math.min(Math.max(INTAKE_PREFETCH, maxBatchSize), getTaxiCount());
+        long window = getAvailableTaxiCount() + prefetch;
+        long queued = getQueueSize() + getPendingOrders();
+        while (true) {
+            long requested = intakeDemand.get();
+            long deficit = window - requested - queued;
+            if (deficit <= 0) {
+                return;
+            }
+            if (intakeDemand.compareAndSet(requested, requested + deficit)) {
+                subscription.request(deficit);
+                return;
+            }
+        }
+    }
+
+    private void replenishIntake() {
+        ZonedDispatcher coordinator = zones;
+        (coordinator == null ? this : coordinator).requestFromIntake();
+    }
+
+    void joinZones(ZonedDispatcher zones) {
+        this.zones = zones;
     }
 
     public int getCompletedRides() {
         return completedRides.get();
     }
 
+    void restoreCompletedRides(int completed) {
+        completedRides.addAndGet(completed);
+    }
+
+    boolean restoreAssignment(Taxi taxi, RideRequest request, long nowMillis) {
+        dispatchLock.lock();
+        try {
+            return taxi.isAvailable() && commitAssignment(taxi, request, nowMillis);
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    boolean hasPendingOrders() {
+        return pendingCount > 0;
+    }
+
+    public int getPendingOrders() {
+        return pendingCount;
+    }
+
     public void registerTaxi(Taxi taxi) {
-        taxis.add(taxi);
-        System.out.printf("[Dispatcher] Registered Taxi-%d at %s\n",
-                taxi.getId(), taxi.getCurrentLocation());
+        adoptTaxi(taxi);
+        EventLog.log(LogEvent.DISPATCHER_REGISTERED, taxi.getId(), taxi.getCurrentLocation());
     }
 
-    private Taxi findNearestAvailableTaxi(Location location) {
-        Taxi nearestTaxi = null;
-        double minDistance = Double.MAX_VALUE;
+    void adoptTaxi(Taxi taxi) {
+        addOwnedTaxi(taxi);
+        offerTaxi(taxi);
+    }
 
-        for (Taxi taxi : taxis) {
-            if (taxi.isAvailable()) {
-                double distance = taxi.distanceTo(location);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    nearestTaxi = taxi;
+    private void addOwnedTaxi(Taxi taxi) {
+        taxi.setDispatcher(this);
+        if (taxis.put(taxi.getId(), taxi) == null) {
+            taxiCount.incrementAndGet();
+        }
+        fleetStore.track(taxi);
+    }
+
+    private void removeOwnedTaxi(Taxi taxi) {
+        if (taxis.remove(taxi.getId()) != null) {
+            taxiCount.decrementAndGet();
+        }
+    }
+
+    private void addAvailable(Taxi taxi, Location location) {
+        availableTaxis.add(taxi, location);
+        availableCount.set(availableTaxis.size());
+    }
+
+    private boolean removeAvailable(Taxi taxi) {
+        boolean removed = availableTaxis.remove(taxi);
+        availableCount.set(availableTaxis.size());
+        return removed;
+    }
+
+    private void offerTaxi(Taxi taxi) {
+        dispatchLock.lock();
+        try {
+            if (!taxi.isAvailable()) {
+                return;
+            }
+
+            RideRequest next = takeBestPending(taxi.getCurrentLocation());
+            if (next != null) {
+                if (commitAssignment(taxi, next, currentTimeMillis())) {
+                    EventLog.log(LogEvent.DISPATCHER_PENDING_MATCHED,
+                            taxi.getId(), next.getId(), pendingRequests.size());
+                    return;
                 }
+                addPending(next);
             }
+            addAvailable(taxi, taxi.getCurrentLocation());
+        } finally {
+            dispatchLock.unlock();
         }
 
-        return nearestTaxi;
+        ZonedDispatcher coordinator = zones;
+        if (coordinator != null) {
+            coordinator.lendToWaitingZone(this, taxi);
+        }
     }
 
-    @Override
-    public void run() {
+    boolean releaseTaxi(Taxi taxi) {
+        dispatchLock.lock();
         try {
-            while (true) {
-                RideRequest request = requestQueue.take();
+            if (!taxi.isAvailable() || !removeAvailable(taxi)) {
+                return false;
+            }
+            removeOwnedTaxi(taxi);
+            return true;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    boolean handOffTaxi(Taxi taxi) {
+        dispatchLock.lock();
+        try {
+            if (!releaseTaxi(taxi)) {
+                return false;
+            }
+            fleetStore.untrack(taxi.getId());
+            return true;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    Taxi handOffNearestTaxi(Location location) {
+        dispatchLock.lock();
+        try {
+            Taxi taxi = stealNearestTaxi(location);
+            if (taxi != null) {
+                fleetStore.untrack(taxi.getId());
+            }
+            return taxi;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    private void addPending(RideRequest request) {
+        pendingRequests.add(request);
+        pendingCount = pendingRequests.size();
+    }
+
+    private RideRequest takeBestPending(Location location) {
+        List<RideRequest> window = new ArrayList<>(PENDING_MATCH_WINDOW);
+        List<Location> pickups = new ArrayList<>(PENDING_MATCH_WINDOW);
+        for (RideRequest request : pendingRequests) {
+            window.add(request);
+            pickups.add(request.getPickupLocation());
+            if (window.size() >= PENDING_MATCH_WINDOW) {
+                break;
+            }
+        }
+
+        int index = pickups.isEmpty() ? -1 : travelModel.fastest(pickups, location);
+        RideRequest best = index < 0 ? null : window.get(index);
+        if (best != null) {
+            pendingRequests.remove(best);
+            pendingCount = pendingRequests.size();
+        }
+        return best;
+    }
+
+    Taxi stealNearestTaxi(Location location) {
+        dispatchLock.lock();
+        try {
+            Taxi taxi = findNearestAvailableTaxi(location);
+            if (taxi != null) {
+                removeAvailable(taxi);
+                removeOwnedTaxi(taxi);
+            }
+            return taxi;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
 
-                System.out.printf("[Dispatcher] New order in queue: %s\n", request);
+    Taxi findNearestAvailableTaxi(Location location) {
+        FlightEvents.DispatchSearch search = new FlightEvents.DispatchSearch();
+        search.begin();
+        Taxi taxi = searchNearestAvailableTaxi(location);
+        if (search.shouldCommit()) {
+            search.candidates = searchPoolSize();
+            search.taxiId = taxi == null ? 0 : taxi.getId();
+            search.chosenDistance = taxi == null ? Double.NaN : travelModel.distance(taxi.getCurrentLocation(), location);
+            search.commit();
+        }
+        return taxi;
+    }
 
-                boolean assigned = false;
-                int attempts = 0;
-                final int MAX_ATTEMPTS = 3;
+    private int searchPoolSize() {
+        if (zones == null && fleetStore.size() <= FLEET_SCAN_LIMIT) {
+            return fleetStore.size();
+        }
+        int available = availableTaxis.size();
+        return travelModel.isStraightLine() ? available : Math.min(ROUTE_CANDIDATES, available);
+    }
 
-                while (!assigned && attempts < MAX_ATTEMPTS) {
-                    dispatchLock.lock();
-                    try {
-                        Taxi taxi = findNearestAvailableTaxi(request.getPickupLocation());
+    private Taxi searchNearestAvailableTaxi(Location location) {
+        if (zones == null && fleetStore.size() <= FLEET_SCAN_LIMIT) {
+            Taxi taxi = fleetStore.nearestAvailable(location);
+            if (taxi != null && taxi.isAvailable()) {
+                return taxi;
+            }
+        }
 
-                        if (taxi != null && taxi.assignRequest(request)) {
-                            System.out.printf("[Dispatcher] Order #%d assigned to Taxi-%d\n",
-                                    request.getId(), taxi.getId());
-                            assigned = true;
-                        }
-                    } finally {
-                        dispatchLock.unlock();
+        TravelModel travel = travelModel;
+        if (!travel.isStraightLine()) {
+            return findFastestAvailableTaxi(location, travel);
+        }
+
+        while (true) {
+            Taxi nearestTaxi = availableTaxis.nearest(location);
+            if (nearestTaxi == null || nearestTaxi.isAvailable()) {
+                return nearestTaxi;
+            }
+            removeAvailable(nearestTaxi);
+        }
+    }
+
+    private Taxi findFastestAvailableTaxi(Location location, TravelModel travel) {
+        while (true) {
+            List<Taxi> nearest = availableTaxis.nearest(location, ROUTE_CANDIDATES);
+            List<Taxi> candidates = new ArrayList<>(nearest.size());
+            for (Taxi taxi : nearest) {
+                if (taxi.isAvailable()) {
+                    candidates.add(taxi);
+                } else {
+                    removeAvailable(taxi);
+                }
+            }
+            if (nearest.isEmpty() || !candidates.isEmpty()) {
+                return candidates.isEmpty() ? null : candidates.get(travel.fastest(locationsOf(candidates), location));
+            }
+        }
+    }
+
+    Taxi dispatch(RideRequest request) {
+        return dispatch(request, currentTimeMillis());
+    }
+
+    Taxi dispatch(RideRequest request, long nowMillis) {
+        RideListener listener = rideListener;
+        if (listener != null) {
+            listener.onSubmitted(request);
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            return findTaxiFor(request, nowMillis);
+        } finally {
+            latencyStats.getDispatchNanos().record(System.nanoTime() - startNanos);
+        }
+    }
+
+    private Taxi findTaxiFor(RideRequest request, long nowMillis) {
+        dispatchLock.lock();
+        try {
+            recordDemand(request, nowMillis);
+            Taxi taxi = findNearestAvailableTaxi(request.getPickupLocation());
+
+            if (isPooling()) {
+                Taxi pooled = insertIntoSharedRoute(request, taxi, nowMillis);
+                if (pooled != null) {
+                    return pooled;
+                }
+            }
+
+            Taxi finishing = etaDispatch && taxi != null
+                    ? findSoonerFinishingTaxi(request.getPickupLocation(), taxi, nowMillis)
+                    : null;
+            if (finishing != null && commitChainedAssignment(finishing, request, nowMillis)) {
+                return finishing;
+            }
+            if (taxi != null && commitAssignment(taxi, request, nowMillis)) {
+                return taxi;
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+
+        ZonedDispatcher coordinator = zones;
+        Taxi stolen = coordinator == null ? null : coordinator.stealTaxi(this, request.getPickupLocation());
+        if (stolen != null) {
+            addOwnedTaxi(stolen);
+        }
+
+        dispatchLock.lock();
+        try {
+            if (stolen != null && commitAssignment(stolen, request, nowMillis)) {
+                EventLog.log(LogEvent.DISPATCHER_BORROWED, stolen.getId(), request.getId());
+                return stolen;
+            }
+            if (stolen != null) {
+                addAvailable(stolen, stolen.getCurrentLocation());
+            }
+
+            Taxi taxi = findNearestAvailableTaxi(request.getPickupLocation());
+            if (taxi != null && commitAssignment(taxi, request, nowMillis)) {
+                return taxi;
+            }
+
+            addPending(request);
+            return null;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    int dispatchBatch(List<RideRequest> batch, long nowMillis, List<Taxi> assignedTaxis) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        RideListener listener = rideListener;
+        if (listener != null) {
+            for (RideRequest request : batch) {
+                listener.onSubmitted(request);
+            }
+        }
+
+        int rows = batch.size();
+        long startNanos = System.nanoTime();
+        dispatchLock.lock();
+        try {
+            for (RideRequest request : batch) {
+                recordDemand(request, nowMillis);
+            }
+            Map<Taxi, Integer> columns = new LinkedHashMap<>();
+            List<List<Taxi>> candidates = new ArrayList<>(rows);
+
+            for (RideRequest request : batch) {
+                List<Taxi> nearest = availableTaxis.nearest(request.getPickupLocation(), BATCH_CANDIDATES_PER_REQUEST);
+                List<Taxi> usable = new ArrayList<>(nearest.size());
+                for (Taxi taxi : nearest) {
+                    if (taxi.isAvailable()) {
+                        usable.add(taxi);
+                        columns.putIfAbsent(taxi, columns.size());
+                    } else {
+                        removeAvailable(taxi);
+                    }
+                }
+                candidates.add(usable);
+            }
+
+            int cols = columns.size();
+            if (cols == 0) {
+                for (RideRequest request : batch) {
+                    addPending(request);
+                }
+                batch.clear();
+                return 0;
+            }
+
+            List<Taxi> columnTaxis = new ArrayList<>(columns.keySet());
+            TravelModel travel = travelModel;
+            int[] match;
+            if (rows <= HUNGARIAN_BATCH_LIMIT) {
+                List<Location> columnLocations = locationsOf(columnTaxis);
+                double[][] cost = new double[rows][];
+                for (int i = 0; i < rows; i++) {
+                    cost[i] = travel.travelSeconds(columnLocations, batch.get(i).getPickupLocation());
+                }
+                match = AssignmentSolver.hungarian(cost, rows, cols);
+            } else {
+                int pairCapacity = rows * BATCH_CANDIDATES_PER_REQUEST;
+                int[] pairRows = new int[pairCapacity];
+                int[] pairCols = new int[pairCapacity];
+                double[] pairCosts = new double[pairCapacity];
+                int pairCount = 0;
+                for (int i = 0; i < rows; i++) {
+                    List<Taxi> usable = candidates.get(i);
+                    double[] seconds = travel.travelSeconds(locationsOf(usable), batch.get(i).getPickupLocation());
+                    for (int k = 0; k < usable.size(); k++) {
+                        pairRows[pairCount] = i;
+                        pairCols[pairCount] = columns.get(usable.get(k));
+                        pairCosts[pairCount] = seconds[k];
+                        pairCount++;
                     }
+                }
+                match = AssignmentSolver.greedy(rows, cols, pairRows, pairCols, pairCosts, pairCount);
+            }
+
+            int assigned = 0;
+            for (int i = 0; i < rows; i++) {
+                RideRequest request = batch.get(i);
+                Taxi taxi = match[i] >= 0 ? columnTaxis.get(match[i]) : null;
+                if (taxi != null && commitAssignment(taxi, request, nowMillis)) {
+                    assignedTaxis.add(taxi);
+                    assigned++;
+                } else {
+                    addPending(request);
+                }
+            }
+
+            batch.clear();
+            return assigned;
+        } finally {
+            dispatchLock.unlock();
+            latencyStats.getDispatchNanos().record((System.nanoTime() - startNanos) / rows, rows);
+        }
+    }
+
+    private static List<Location> locationsOf(List<Taxi> taxis) {
+        List<Location> locations = new ArrayList<>(taxis.size());
+        for (Taxi taxi : taxis) {
+            locations.add(taxi.getCurrentLocation());
+        }
+        return locations;
+    }
+
+    private Taxi findSoonerFinishingTaxi(Location pickup, Taxi idleTaxi, long nowMillis) {
+        TravelModel travel = travelModel;
+        long bestEtaMillis = travel.travelTimeMillis(idleTaxi.getCurrentLocation(), pickup);
+        Taxi best = null;
+
+        for (Taxi taxi : finishingTaxis.nearest(pickup, ETA_CANDIDATES)) {
+            if (!taxi.isFinishing()) {
+                finishingTaxis.remove(taxi);
+                continue;
+            }
+            long etaMillis = Math.max(0, taxi.getProjectedFreeAtMillis() - nowMillis)
+                    + travel.travelTimeMillis(taxi.getProjectedFreeLocation(), pickup);
+            if (etaMillis < bestEtaMillis) {
+                bestEtaMillis = etaMillis;
+                best = taxi;
+            }
+        }
+        return best;
+    }
+
+    private void recordDemand(RideRequest request, long nowMillis) {
+        DemandHeatmap heatmap = demand;
+        if (heatmap != null) {
+            heatmap.record(request.getPickupLocation(), nowMillis);
+        }
+    }
+
+    public int rebalanceIdleTaxis(long nowMillis) {
+        DemandHeatmap heatmap = demand;
+        if (heatmap == null) {
+            return 0;
+        }
 
-                    if (!assigned) {
-                        attempts++;
-                        System.out.printf("[Dispatcher] No available taxis for order #%d (attempt %d)\n",
-                                request.getId(), attempts);
-                        Thread.sleep(1000);
+        int moved = 0;
+        int idleCount;
+        dispatchLock.lock();
+        try {
+            List<Taxi> idle = availableTaxis.taxis();
+            idleCount = idle.size();
+            int cells = heatmap.cellCount();
+            double[] deficit = heatmap.snapshot(nowMillis);
+            double totalDemand = 0;
+            for (double weight : deficit) {
+                totalDemand += weight;
+            }
+            if (idleCount == 0 || totalDemand < REBALANCE_MIN_DEMAND) {
+                return 0;
+            }
+
+            double[] tolerance = new double[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                deficit[cell] = deficit[cell] * idleCount / totalDemand;
+                tolerance[cell] = 1 + Math.sqrt(deficit[cell]);
+            }
+            for (Taxi taxi : idle) {
+                if (!taxi.isAvailable()) {
+                    removeAvailable(taxi);
+                    continue;
+                }
+                Location position = taxi.trackReposition(nowMillis);
+                addAvailable(taxi, position);
+                Location target = taxi.getRepositionTarget();
+                deficit[heatmap.cellOf(target == null ? position : target)] -= 1;
+            }
+
+            int maxMoves = Math.max(1, idleCount / 4);
+            while (moved < maxMoves) {
+                int neediest = 0;
+                for (int cell = 1; cell < cells; cell++) {
+                    if (deficit[cell] - tolerance[cell] > deficit[neediest] - tolerance[neediest]) {
+                        neediest = cell;
                     }
                 }
+                if (deficit[neediest] < tolerance[neediest]) {
+                    break;
+                }
 
-                if (!assigned) {
-                    System.out.printf("[Dispatcher] Failed to find taxi for order #%d\n",
-                            request.getId());
+                Location center = heatmap.centerOf(neediest);
+                Taxi donor = null;
+                int donorCell = -1;
+                for (Taxi candidate : availableTaxis.nearest(center, REBALANCE_CANDIDATES)) {
+                    if (!candidate.isAvailable() || candidate.isRepositioning()) {
+                        continue;
+                    }
+                    int cell = heatmap.cellOf(candidate.getCurrentLocation());
+                    if (deficit[cell] <= -tolerance[cell]) {
+                        donor = candidate;
+                        donorCell = cell;
+                        break;
+                    }
+                }
+                if (donor == null) {
+                    tolerance[neediest] = Double.MAX_VALUE;
+                    continue;
                 }
+
+                donor.reposition(center, nowMillis);
+                deficit[neediest] -= 1;
+                deficit[donorCell] += 1;
+                moved++;
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+
+        if (moved > 0) {
+            repositionedTaxis.addAndGet(moved);
+            EventLog.log(LogEvent.DISPATCHER_REBALANCED, moved, idleCount);
+        }
+        return moved;
+    }
+
+    private Taxi insertIntoSharedRoute(RideRequest request, Taxi idleTaxi, long nowMillis) {
+        Location pickup = request.getPickupLocation();
+        TravelModel travel = travelModel;
+        double bestCost = idleTaxi == null
+                ? Double.MAX_VALUE
+                : 2 * travel.distance(idleTaxi.getCurrentLocation(), pickup) + Route.rideDistance(travel, request);
+        Taxi best = null;
+        Route bestRoute = null;
+        Route.Insertion bestInsertion = null;
+
+        for (Taxi taxi : pooledTaxis.nearest(pickup, POOL_CANDIDATES)) {
+            Route route = taxi.getRoute();
+            if (route == null || route.isEmpty() || taxi.getDispatcher() != this) {
+                pooledTaxis.remove(taxi);
+                continue;
+            }
+            Route.Insertion insertion = route.findInsertion(request, poolCapacity, maxDetour, maxPickupWaitMillis,
+                    nowMillis);
+            if (insertion != null && insertion.cost() < bestCost) {
+                bestCost = insertion.cost();
+                best = taxi;
+                bestRoute = route;
+                bestInsertion = insertion;
+            }
+        }
+
+        if (best == null || !best.updateRoute(bestRoute, bestRoute.insert(request, bestInsertion, maxDetour, nowMillis))) {
+            return null;
+        }
+        pooledRides.incrementAndGet();
+        recordAssignment(best, request, nowMillis, bestInsertion.getPickupDistance(),
+                bestInsertion.getPickupMillis());
+        EventLog.log(LogEvent.DISPATCHER_POOLED, request.getId(), best.getId(), bestRoute.size() + 2,
+                bestInsertion.getAddedDistance());
+        notifyAssigned(best, request, nowMillis, bestInsertion.getPickupDistance());
+        return best;
+    }
+
+    private boolean commitAssignment(Taxi taxi, RideRequest request, long nowMillis) {
+        TravelModel travel = travelModel;
+        Location location = taxi.getCurrentLocation();
+        double pickupDistance = travel.distance(location, request.getPickupLocation());
+        long pickupMillis = travel.travelTimeMillis(location, request.getPickupLocation());
+        boolean assigned = isPooling()
+                ? taxi.assignRoute(Route.start(travel, location, request, maxDetour, nowMillis))
+                : taxi.assignRequest(request);
+        if (!assigned) {
+            return false;
+        }
+
+        removeAvailable(taxi);
+        if (isPooling()) {
+            pooledTaxis.add(taxi, taxi.getCurrentLocation());
+        }
+        recordAssignment(taxi, request, nowMillis, pickupDistance, pickupMillis);
+        EventLog.log(LogEvent.DISPATCHER_ASSIGNED, request.getId(), taxi.getId());
+        notifyAssigned(taxi, request, nowMillis, pickupDistance);
+        return true;
+    }
+
+    private boolean commitChainedAssignment(Taxi taxi, RideRequest request, long nowMillis) {
+        TravelModel travel = travelModel;
+        Location freeLocation = taxi.getProjectedFreeLocation();
+        double pickupDistance = travel.distance(freeLocation, request.getPickupLocation());
+        long freeInMillis = Math.max(0, taxi.getProjectedFreeAtMillis() - nowMillis);
+        long pickupMillis = freeInMillis + travel.travelTimeMillis(freeLocation, request.getPickupLocation());
+        finishingTaxis.remove(taxi);
+        if (!taxi.chainRequest(request)) {
+            return false;
+        }
+
+        chainedRides.incrementAndGet();
+        recordAssignment(taxi, request, nowMillis, pickupDistance, pickupMillis);
+        EventLog.log(LogEvent.DISPATCHER_CHAINED, request.getId(), taxi.getId(), freeInMillis);
+        notifyAssigned(taxi, request, nowMillis, pickupDistance);
+        return true;
+    }
+
+    private void recordAssignment(Taxi taxi, RideRequest request, long nowMillis, double pickupDistance, long pickupMillis) {
+        assignedRides.incrementAndGet();
+        totalPickupDistance.add(pickupDistance);
+        long waitMillis = Math.max(0, nowMillis - request.getTimestamp());
+        latencyStats.getWaitMillis().record(waitMillis);
+        totalPickupWaitMillis.addAndGet(waitMillis + pickupMillis);
+
+        FlightEvents.RideAssigned assigned = new FlightEvents.RideAssigned();
+        if (assigned.shouldCommit()) {
+            assigned.requestId = request.getId();
+            assigned.taxiId = taxi.getId();
+            assigned.pickupDistance = pickupDistance;
+            assigned.orderWait = waitMillis;
+            assigned.pickupTime = pickupMillis;
+            assigned.commit();
+        }
+    }
+
+    private void notifyAssigned(Taxi taxi, RideRequest request, long nowMillis, double pickupDistance) {
+        RideListener listener = rideListener;
+        if (listener != null) {
+            listener.onAssigned(request, taxi, nowMillis, pickupDistance);
+        }
+    }
+
+    void notifyTripStarted(Taxi taxi) {
+        if (!etaDispatch) {
+            return;
+        }
+        dispatchLock.lock();
+        try {
+            if (taxi.isFinishing()) {
+                finishingTaxis.add(taxi, taxi.getProjectedFreeLocation());
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    void notifyRouteChanged(Taxi taxi) {
+        if (!isPooling()) {
+            return;
+        }
+        dispatchLock.lock();
+        try {
+            Route route = taxi.getRoute();
+            if (route != null && !route.isEmpty()) {
+                pooledTaxis.add(taxi, taxi.getCurrentLocation());
+            } else {
+                pooledTaxis.remove(taxi);
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    void requeueChained(RideRequest request) {
+        Taxi taxi = findTaxiFor(request, currentTimeMillis());
+        if (taxi == null) {
+            notifyNoTaxiAvailable(request);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (isBatching()) {
+                runBatched();
+            }
+
+            while (true) {
+                RideRequest request = requestQueue.take();
+
+                EventLog.log(LogEvent.DISPATCHER_NEW_ORDER, request);
+
+                if (dispatch(request) == null) {
+                    notifyNoTaxiAvailable(request);
+                }
+                replenishIntake();
             }
         } catch (InterruptedException e) {
             System.out.println("[Dispatcher] Shutting down");
@@ -89,27 +968,125 @@ class Dispatcher implements Runnable {
         }
     }
 
+    private void runBatched() throws InterruptedException {
+        List<RideRequest> batch = new ArrayList<>();
+        List<Taxi> assignedTaxis = new ArrayList<>();
+
+        while (true) {
+            RideRequest first = requestQueue.take();
+            EventLog.log(LogEvent.DISPATCHER_NEW_ORDER, first);
+            batch.add(first);
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+            while (batch.size() < maxBatchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                RideRequest request = requestQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (request == null) {
+                    break;
+                }
+                EventLog.log(LogEvent.DISPATCHER_NEW_ORDER, request);
+                batch.add(request);
+            }
+
+            int size = batch.size();
+            int assigned = dispatchBatch(batch, currentTimeMillis(), assignedTaxis);
+            assignedTaxis.clear();
+            EventLog.log(LogEvent.DISPATCHER_BATCH, size, assigned, getPendingOrders());
+            replenishIntake();
+        }
+    }
+
+    void notifyNoTaxiAvailable(RideRequest request) {
+        EventLog.log(LogEvent.DISPATCHER_NO_TAXI, request.getId());
+    }
+
     public void notifyRideComplete(Taxi taxi, RideRequest request) {
-        completedRides.incrementAndGet();
-        System.out.printf("[Dispatcher] Ride #%d completed. Total: %d\n",
-                request.getId(), completedRides.get());
+        if (etaDispatch || isPooling()) {
+            dispatchLock.lock();
+            try {
+                finishingTaxis.remove(taxi);
+                if (taxi.getRoute() == null) {
+                    pooledTaxis.remove(taxi);
+                }
+            } finally {
+                dispatchLock.unlock();
+            }
+        }
+
+        int total = completedRides.incrementAndGet();
+        EventLog.log(LogEvent.DISPATCHER_RIDE_COMPLETED, request.getId(), total);
+
+        FlightEvents.RideCompleted completed = new FlightEvents.RideCompleted();
+        if (completed.shouldCommit()) {
+            completed.requestId = request.getId();
+            completed.taxiId = taxi.getId();
+            completed.rideDistance = request.getRideDistance();
+            completed.totalTime = Math.max(0, currentTimeMillis() - request.getTimestamp());
+            completed.commit();
+        }
+
+        RideListener listener = rideListener;
+        if (listener != null) {
+            listener.onCompleted(request, taxi, currentTimeMillis());
+        }
+
+        ZonedDispatcher coordinator = zones;
+        Dispatcher owner = coordinator == null ? this : coordinator.zoneFor(taxi.getCurrentLocation());
+        if (owner != this) {
+            removeOwnedTaxi(taxi);
+            owner.adoptTaxi(taxi);
+        } else {
+            offerTaxi(taxi);
+        }
+        replenishIntake();
     }
 
     public void printStatus() {
         System.out.println("\n[Status] SYSTEM INFORMATION");
-        System.out.printf("[Status] Taxis: %d | Completed rides: %d | Queue: %d\n",
-                taxis.size(), completedRides.get(), requestQueue.size());
+        System.out.printf("[Status] Taxis: %d | Completed rides: %d | Queue: %d | Waiting for taxi: %d\n",
+                fleetStore.size(), completedRides.get(), requestQueue.size(), getPendingOrders());
+        if (etaDispatch) {
+            System.out.printf("[Status] Rides chained onto finishing taxis: %d\n", getChainedRides());
+        }
+        if (isRebalancing()) {
+            System.out.printf("[Status] Idle taxis repositioned toward demand: %d\n", getRepositionedTaxis());
+        }
+        if (isPooling()) {
+            System.out.printf("[Status] Rides pooled into shared routes: %d (capacity %d, max detour %.0f%%, "
+                            + "max pickup wait %d s)\n",
+                    getPooledRides(), poolCapacity, maxDetour * 100, maxPickupWaitMillis / 1000);
+        }
 
+        FleetSnapshot fleet = fleetStore.snapshot(currentTimeMillis());
         int available = 0;
-        for (Taxi taxi : taxis) {
-            if (taxi.isAvailable()) {
+        int printed = 0;
+        for (int i = 0; i < fleet.size(); i++) {
+            int state = fleet.getState(i);
+            if (state == Taxi.AVAILABLE) {
                 available++;
+            }
+            if (printed++ >= MAX_STATUS_LINES) {
+                continue;
+            }
+
+            Location location = new Location(fleet.getX(i), fleet.getY(i));
+            int requestId = fleet.getRequestId(i);
+            if (state == Taxi.AVAILABLE) {
                 System.out.printf("[Status] Taxi-%d: available at %s\n",
-                        taxi.getId(), taxi.getCurrentLocation());
+                        fleet.getId(i), location);
+            } else if (requestId != 0) {
+                System.out.printf("[Status] Taxi-%d: %s with order #%d at %s\n",
+                        fleet.getId(i), Taxi.stateName(state), requestId, location);
             } else {
-                System.out.printf("[Status] Taxi-%d: busy with order\n", taxi.getId());
+                System.out.printf("[Status] Taxi-%d: busy with order\n", fleet.getId(i));
             }
         }
+        if (printed > MAX_STATUS_LINES) {
+            System.out.printf("[Status] ... %d more taxis not shown\n", printed - MAX_STATUS_LINES);
+        }
         System.out.printf("[Status] Available taxis: %d\n", available);
         System.out.println();
     }
@@ -0,0 +1,223 @@
+import java.util.Formatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+final class EventLog {
+    enum Level {
+        ERROR, WARN, INFO, DETAIL
+    }
+
+    private static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+    private static final int SLOTS_PER_RECORD = 8;
+    private static final int FLUSH_THRESHOLD_CHARS = 1 << 16;
+    private static final LogEvent[] EVENTS = LogEvent.values();
+
+    private static final int[] codes = new int[CAPACITY];
+    private static final long[] slots = new long[CAPACITY * SLOTS_PER_RECORD];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong();
+    private static volatile long head;
+    private static volatile int threshold = Level.DETAIL.ordinal();
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+
+        Thread writer = new Thread(EventLog::drain, "EventLog");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private EventLog() {
+    }
+
+    static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    static boolean isEnabled(LogEvent event) {
+        return event.getLevel().ordinal() <= threshold;
+    }
+
+    static void log(LogEvent event, long a) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, long b) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        slots[base + 1] = b;
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, long b, long c) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        slots[base + 1] = b;
+        slots[base + 2] = c;
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, long b, long c, long d) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        slots[base + 1] = b;
+        slots[base + 2] = c;
+        slots[base + 3] = d;
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, double x) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        slots[base + 1] = Double.doubleToRawLongBits(x);
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, long b, long c, double x) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        slots[base + 1] = b;
+        slots[base + 2] = c;
+        slots[base + 3] = Double.doubleToRawLongBits(x);
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, Location location) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        slots[base + 1] = Double.doubleToRawLongBits(location.getX());
+        slots[base + 2] = Double.doubleToRawLongBits(location.getY());
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, Location location, double x, long b) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        slots[base + 1] = Double.doubleToRawLongBits(location.getX());
+        slots[base + 2] = Double.doubleToRawLongBits(location.getY());
+        slots[base + 3] = Double.doubleToRawLongBits(x);
+        slots[base + 4] = b;
+        publish(seq);
+    }
+
+    static void log(LogEvent event, RideRequest request) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        writeRequest(base, request);
+        publish(seq);
+    }
+
+    static void log(LogEvent event, long a, RideRequest request) {
+        if (!isEnabled(event)) return;
+        long seq = claim();
+        int base = begin(seq, event);
+        slots[base] = a;
+        writeRequest(base + 1, request);
+        publish(seq);
+    }
+
+    static void flush() {
+        long target = tail.get();
+        while (head < target) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private static void writeRequest(int base, RideRequest request) {
+        Location pickup = request.getPickupLocation();
+        Location destination = request.getDestination();
+        slots[base] = request.getId();
+        slots[base + 1] = Double.doubleToRawLongBits(pickup.getX());
+        slots[base + 2] = Double.doubleToRawLongBits(pickup.getY());
+        slots[base + 3] = Double.doubleToRawLongBits(destination.getX());
+        slots[base + 4] = Double.doubleToRawLongBits(destination.getY());
+        slots[base + 5] = Double.doubleToRawLongBits(request.getRideDistance());
+    }
+
+    private static long claim() {
+        long seq = tail.getAndIncrement();
+        while (seq - head >= CAPACITY) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        return seq;
+    }
+
+    private static int begin(long seq, LogEvent event) {
+        int index = (int) (seq & MASK);
+        codes[index] = event.ordinal();
+        return index * SLOTS_PER_RECORD;
+    }
+
+    private static void publish(long seq) {
+        published.lazySet((int) (seq & MASK), seq);
+    }
+
+    private static void drain() {
+        StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD_CHARS * 2);
+        Formatter formatter = new Formatter(buffer);
+        Object[][] arguments = new Object[SLOTS_PER_RECORD + 1][];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = new Object[i];
+        }
+
+        long next = head;
+        while (true) {
+            int processed = 0;
+            int index = (int) (next & MASK);
+            while (published.get(index) == next) {
+                LogEvent event = EVENTS[codes[index]];
+                String signature = event.getSignature();
+                Object[] args = arguments[signature.length()];
+                int base = index * SLOTS_PER_RECORD;
+                for (int i = 0; i < signature.length(); i++) {
+                    long raw = slots[base + i];
+                    args[i] = signature.charAt(i) == 'd' ? (Object) Double.longBitsToDouble(raw) : (Object) raw;
+                }
+                formatter.format(event.getFormat(), args);
+                buffer.append('\n');
+
+                next++;
+                processed++;
+                index = (int) (next & MASK);
+                if (buffer.length() >= FLUSH_THRESHOLD_CHARS) {
+                    break;
+                }
+            }
+
+            if (buffer.length() > 0) {
+                System.out.print(buffer);
+                System.out.flush();
+                buffer.setLength(0);
+            }
+            head = next;
+
+            if (processed == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+class FleetScheduler implements Runnable {
+    private static final long TICK_MILLIS = 10;
+
+    private final TimingWheel wheel;
+    private final ConcurrentLinkedQueue<Taxi> assignedTaxis;
+    private volatile boolean running;
+    private volatile Thread schedulerThread;
+
+    public FleetScheduler() {
+        this.wheel = new TimingWheel(TICK_MILLIS, System.currentTimeMillis());
+        this.assignedTaxis = new ConcurrentLinkedQueue<>();
+        this.running = true;
+    }
+
+    public void attach(Taxi taxi) {
+        taxi.attachScheduler(this);
+        if (taxi.getState() == Taxi.ASSIGNED) {
+            onAssigned(taxi);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        Thread thread = schedulerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public int getScheduledTimers() {
+        return wheel.size();
+    }
+
+    void onAssigned(Taxi taxi) {
+        assignedTaxis.add(taxi);
+        Thread thread = schedulerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void step(Taxi taxi, long nowMillis) {
+        long delay = taxi.advanceRide();
+        if (delay >= 0) {
+            long deadline = nowMillis + delay;
+            wheel.schedule(deadline, () -> step(taxi, deadline));
+        }
+    }
+
+    @Override
+    public void run() {
+        schedulerThread = Thread.currentThread();
+        try {
+            while (running) {
+                long now = System.currentTimeMillis();
+
+                Taxi taxi;
+                while ((taxi = assignedTaxis.poll()) != null) {
+                    step(taxi, now);
+                }
+
+                wheel.advanceTo(now);
+
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS));
+            }
+        } finally {
+            schedulerThread = null;
+            System.out.println("[Scheduler] Shutting down");
+        }
+    }
+}
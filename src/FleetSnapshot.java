@@ -0,0 +1,62 @@
+import java.util.Arrays;
+
+class FleetSnapshot {
+    private final long timeMillis;
+    private int size;
+    private int[] ids;
+    private double[] xs;
+    private double[] ys;
+    private byte[] states;
+    private int[] requestIds;
+    private long retries;
+
+    FleetSnapshot(long timeMillis, int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        this.timeMillis = timeMillis;
+        this.ids = new int[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.states = new byte[capacity];
+        this.requestIds = new int[capacity];
+    }
+
+    void add(int id, double x, double y, byte state, int requestId) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            states = Arrays.copyOf(states, capacity);
+            requestIds = Arrays.copyOf(requestIds, capacity);
+        }
+        ids[size] = id;
+        xs[size] = x;
+        ys[size] = y;
+        states[size] = state;
+        requestIds[size] = requestId;
+        size++;
+    }
+
+    void addRetries(long count) {
+        retries += count;
+    }
+
+    public long getTimeMillis() { return timeMillis; }
+    public int size() { return size; }
+    public int getId(int index) { return ids[index]; }
+    public double getX(int index) { return xs[index]; }
+    public double getY(int index) { return ys[index]; }
+    public int getState(int index) { return states[index]; }
+    public int getRequestId(int index) { return requestIds[index]; }
+    public long getRetries() { return retries; }
+
+    public int count(int state) {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            if (states[i] == state) {
+                total++;
+            }
+        }
+        return total;
+    }
+}
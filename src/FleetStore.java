@@ -0,0 +1,225 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+class FleetStore {
+    interface Scan {
+        int nearest(double[] xs, double[] ys, byte[] states, int count, double x, double y);
+    }
+
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int STATE_PADDING = 8;
+    static final byte ABSENT = -1;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final Scan SCAN = loadScan();
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile Page[] pages;
+    private volatile int highestId;
+    private volatile int size;
+
+    public FleetStore() {
+        this.pages = new Page[0];
+        this.highestId = 0;
+    }
+
+    static String scanName() {
+        return SCAN instanceof ScalarScan ? "scalar" : SCAN.getClass().getSimpleName();
+    }
+
+    public synchronized void track(Taxi taxi) {
+        int id = taxi.getId();
+        Page page = pageFor(id);
+        int slot = id & PAGE_MASK;
+        if (page.states[slot] == ABSENT) {
+            size++;
+        }
+        Location location = taxi.getCurrentLocation();
+        RideRequest request = taxi.getCurrentRequest();
+        long sequence = beginWrite(page, slot);
+        page.xs[slot] = location.getX();
+        page.ys[slot] = location.getY();
+        page.taxis[slot] = taxi;
+        page.states[slot] = (byte) taxi.getState();
+        page.requestIds[slot] = request == null ? 0 : request.getId();
+        endWrite(page, slot, sequence);
+        if (id > highestId) {
+            highestId = id;
+        }
+    }
+
+    public synchronized void untrack(int id) {
+        Page page = existingPage(id);
+        int slot = id & PAGE_MASK;
+        if (page == null || page.states[slot] == ABSENT) {
+            return;
+        }
+        long sequence = beginWrite(page, slot);
+        page.states[slot] = ABSENT;
+        page.taxis[slot] = null;
+        page.requestIds[slot] = 0;
+        endWrite(page, slot, sequence);
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    void updateLocation(int id, Location location) {
+        Page page = existingPage(id);
+        if (page != null) {
+            int slot = id & PAGE_MASK;
+            long sequence = beginWrite(page, slot);
+            page.xs[slot] = location.getX();
+            page.ys[slot] = location.getY();
+            endWrite(page, slot, sequence);
+        }
+    }
+
+    void updateState(int id, int state, RideRequest request) {
+        Page page = existingPage(id);
+        int slot = id & PAGE_MASK;
+        if (page != null && page.states[slot] != ABSENT) {
+            long sequence = beginWrite(page, slot);
+            page.states[slot] = (byte) state;
+            page.requestIds[slot] = request == null ? 0 : request.getId();
+            endWrite(page, slot, sequence);
+        }
+    }
+
+    FleetSnapshot snapshot(long timeMillis) {
+        Page[] snapshot = pages;
+        int lastId = highestId;
+        FleetSnapshot fleet = new FleetSnapshot(timeMillis, size);
+        long retries = 0;
+
+        for (int p = 0; p < snapshot.length && ((long) p << PAGE_BITS) <= lastId; p++) {
+            Page page = snapshot[p];
+            int count = Math.min(PAGE_SIZE, lastId - (p << PAGE_BITS) + 1);
+            for (int slot = 0; slot < count; slot++) {
+                while (true) {
+                    long before = (long) SEQUENCES.getAcquire(page.sequences, slot);
+                    if ((before & 1) == 0) {
+                        byte state = page.states[slot];
+                        double x = page.xs[slot];
+                        double y = page.ys[slot];
+                        int requestId = page.requestIds[slot];
+                        VarHandle.acquireFence();
+                        if ((long) SEQUENCES.getOpaque(page.sequences, slot) == before) {
+                            if (state != ABSENT) {
+                                fleet.add((p << PAGE_BITS) | slot, x, y, state, requestId);
+                            }
+                            break;
+                        }
+                    }
+                    retries++;
+                    Thread.onSpinWait();
+                }
+            }
+        }
+        fleet.addRetries(retries);
+        return fleet;
+    }
+
+    private static long beginWrite(Page page, int slot) {
+        while (true) {
+            long sequence = (long) SEQUENCES.getVolatile(page.sequences, slot);
+            if ((sequence & 1) == 0 && SEQUENCES.compareAndSet(page.sequences, slot, sequence, sequence + 1)) {
+                return sequence + 1;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void endWrite(Page page, int slot, long sequence) {
+        SEQUENCES.setRelease(page.sequences, slot, sequence + 1);
+    }
+
+    Taxi nearestAvailable(Location location) {
+        double x = location.getX();
+        double y = location.getY();
+        Page[] snapshot = pages;
+        int lastId = highestId;
+        Taxi best = null;
+        double bestDistance = Double.MAX_VALUE;
+
+        for (int p = 0; p < snapshot.length && ((long) p << PAGE_BITS) <= lastId; p++) {
+            Page page = snapshot[p];
+            int count = Math.min(PAGE_SIZE, lastId - (p << PAGE_BITS) + 1);
+            int slot = SCAN.nearest(page.xs, page.ys, page.states, count, x, y);
+            if (slot >= 0) {
+                double dx = page.xs[slot] - x;
+                double dy = page.ys[slot] - y;
+                double distance = dx * dx + dy * dy;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = page.taxis[slot];
+                }
+            }
+        }
+        return best;
+    }
+
+    private Page existingPage(int id) {
+        Page[] snapshot = pages;
+        int index = id >>> PAGE_BITS;
+        return index < snapshot.length ? snapshot[index] : null;
+    }
+
+    private Page pageFor(int id) {
+        int index = id >>> PAGE_BITS;
+        Page[] snapshot = pages;
+        if (index >= snapshot.length) {
+            Page[] grown = new Page[Math.max(index + 1, snapshot.length * 2)];
+            System.arraycopy(snapshot, 0, grown, 0, snapshot.length);
+            for (int i = snapshot.length; i < grown.length; i++) {
+                grown[i] = new Page();
+            }
+            pages = grown;
+            snapshot = grown;
+        }
+        return snapshot[index];
+    }
+
+    private static Scan loadScan() {
+        try {
+            return (Scan) Class.forName("VectorFleetScan").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarScan();
+        }
+    }
+
+    private static final class Page {
+        private final double[] xs = new double[PAGE_SIZE];
+        private final double[] ys = new double[PAGE_SIZE];
+        private final byte[] states = new byte[PAGE_SIZE + STATE_PADDING];
+        private final Taxi[] taxis = new Taxi[PAGE_SIZE];
+        private final int[] requestIds = new int[PAGE_SIZE];
+        private final long[] sequences = new long[PAGE_SIZE];
+
+        private Page() {
+            Arrays.fill(states, ABSENT);
+        }
+    }
+
+    static final class ScalarScan implements Scan {
+        @Override
+        public int nearest(double[] xs, double[] ys, byte[] states, int count, double x, double y) {
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                double dx = xs[i] - x;
+                double dy = ys[i] - y;
+                double distance = dx * dx + dy * dy;
+                if (states[i] == Taxi.AVAILABLE && distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+}
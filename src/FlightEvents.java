@@ -0,0 +1,130 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+final class FlightEvents {
+    static final String RIDE_ENQUEUED = "taxi.RideEnqueued";
+    static final String DISPATCH_SEARCH = "taxi.DispatchSearch";
+    static final String RIDE_ASSIGNED = "taxi.RideAssigned";
+    static final String MOVEMENT_PHASE = "taxi.MovementPhase";
+    static final String RIDE_COMPLETED = "taxi.RideCompleted";
+
+    private FlightEvents() {
+    }
+
+    static void register() {
+        FlightRecorder.register(RideEnqueued.class);
+        FlightRecorder.register(DispatchSearch.class);
+        FlightRecorder.register(RideAssigned.class);
+        FlightRecorder.register(MovementPhase.class);
+        FlightRecorder.register(RideCompleted.class);
+    }
+
+    @Name(RIDE_ENQUEUED)
+    @Label("Ride Enqueued")
+    @Description("A generated order handed to the ride intake; the duration is the time spent waiting for a free slot")
+    @Category({"Taxi", "Dispatch"})
+    @StackTrace(false)
+    static final class RideEnqueued extends Event {
+        @Label("Request Id")
+        int requestId;
+
+        @Label("Ride Distance")
+        double rideDistance;
+
+        @Label("Accepted")
+        boolean accepted;
+    }
+
+    @Name(DISPATCH_SEARCH)
+    @Label("Dispatch Search")
+    @Description("Search for the nearest available taxi to a pickup point")
+    @Category({"Taxi", "Dispatch"})
+    @StackTrace(false)
+    static final class DispatchSearch extends Event {
+        @Label("Candidates")
+        @Description("Size of the taxi pool the search ran over")
+        int candidates;
+
+        @Label("Taxi Id")
+        @Description("Chosen taxi, or 0 when none was available")
+        int taxiId;
+
+        @Label("Chosen Distance")
+        @Description("Distance from the chosen taxi to the pickup point, NaN when none was available")
+        double chosenDistance;
+    }
+
+    @Name(RIDE_ASSIGNED)
+    @Label("Ride Assigned")
+    @Description("An order committed to a taxi, directly, chained behind its current ride or pooled into its route")
+    @Category({"Taxi", "Dispatch"})
+    @StackTrace(false)
+    static final class RideAssigned extends Event {
+        @Label("Request Id")
+        int requestId;
+
+        @Label("Taxi Id")
+        int taxiId;
+
+        @Label("Pickup Distance")
+        double pickupDistance;
+
+        @Label("Order Wait")
+        @Timespan(Timespan.MILLISECONDS)
+        long orderWait;
+
+        @Label("Expected Pickup Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long pickupTime;
+    }
+
+    @Name(MOVEMENT_PHASE)
+    @Label("Movement Phase")
+    @Description("A finished phase of a taxi's ride, timed on the dispatcher clock so simulated runs report simulated time")
+    @Category({"Taxi", "Movement"})
+    @StackTrace(false)
+    static final class MovementPhase extends Event {
+        @Label("Taxi Id")
+        int taxiId;
+
+        @Label("Request Id")
+        int requestId;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Distance")
+        double distance;
+
+        @Label("Phase Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long phaseTime;
+    }
+
+    @Name(RIDE_COMPLETED)
+    @Label("Ride Completed")
+    @Description("A passenger dropped off and the ride closed")
+    @Category({"Taxi", "Dispatch"})
+    @StackTrace(false)
+    static final class RideCompleted extends Event {
+        @Label("Request Id")
+        int requestId;
+
+        @Label("Taxi Id")
+        int taxiId;
+
+        @Label("Ride Distance")
+        double rideDistance;
+
+        @Label("Total Time")
+        @Description("From order creation to drop-off on the dispatcher clock")
+        @Timespan(Timespan.MILLISECONDS)
+        long totalTime;
+    }
+}
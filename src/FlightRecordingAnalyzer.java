@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecordingAnalyzer {
+    private static final double MICROS = 1_000.0;
+    private static final double SECONDS = 1_000_000_000.0;
+    private static final String[] MOVEMENT_PHASES = {
+            Taxi.stateName(Taxi.ASSIGNED), Taxi.stateName(Taxi.TO_PICKUP), Taxi.stateName(Taxi.BOARDING),
+            Taxi.stateName(Taxi.ON_TRIP), Taxi.stateName(Taxi.DISEMBARKING)
+    };
+
+    private static final class Row {
+        private final String label;
+        private final double divisor;
+        private final LatencyHistogram nanos;
+        private double distance;
+
+        private Row(String label, double divisor) {
+            this.label = label;
+            this.divisor = divisor;
+            this.nanos = new LatencyHistogram();
+        }
+
+        private void record(Duration duration, double travelled) {
+            nanos.record(duration.toNanos());
+            if (!Double.isNaN(travelled)) {
+                distance += travelled;
+            }
+        }
+    }
+
+    private final Row enqueue;
+    private final Row search;
+    private final Row orderWait;
+    private final Row expectedPickup;
+    private final Map<String, Row> phases;
+    private final Row total;
+    private long rejected;
+    private long emptySearches;
+    private long candidates;
+
+    private FlightRecordingAnalyzer() {
+        this.enqueue = new Row("Enqueue into intake (us)", MICROS);
+        this.search = new Row("Dispatch search (us)", MICROS);
+        this.orderWait = new Row("Order wait (s)", SECONDS);
+        this.expectedPickup = new Row("Expected pickup (s)", SECONDS);
+        this.phases = new LinkedHashMap<>();
+        for (String phase : MOVEMENT_PHASES) {
+            phases.put(phase, new Row("Phase: " + phase + " (s)", SECONDS));
+        }
+        this.total = new Row("Ride total (s)", SECONDS);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: FlightRecordingAnalyzer <recording.jfr>");
+            System.exit(1);
+        }
+
+        Path recording = Paths.get(args[0]);
+        FlightRecordingAnalyzer analyzer = new FlightRecordingAnalyzer();
+        long events = 0;
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                if (analyzer.accept(file.readEvent())) {
+                    events++;
+                }
+            }
+        }
+
+        System.out.println("FLIGHT RECORDING BREAKDOWN\n");
+        System.out.printf("Recording: %s | Taxi events: %d\n\n", recording, events);
+        analyzer.printReport();
+    }
+
+    private boolean accept(RecordedEvent event) {
+        switch (event.getEventType().getName()) {
+            case FlightEvents.RIDE_ENQUEUED:
+                enqueue.record(event.getDuration(), Double.NaN);
+                if (!event.getBoolean("accepted")) {
+                    rejected++;
+                }
+                return true;
+            case FlightEvents.DISPATCH_SEARCH:
+                search.record(event.getDuration(), event.getDouble("chosenDistance"));
+                candidates += event.getInt("candidates");
+                if (event.getInt("taxiId") == 0) {
+                    emptySearches++;
+                }
+                return true;
+            case FlightEvents.RIDE_ASSIGNED:
+                orderWait.record(event.getDuration("orderWait"), Double.NaN);
+                expectedPickup.record(event.getDuration("pickupTime"), event.getDouble("pickupDistance"));
+                return true;
+            case FlightEvents.MOVEMENT_PHASE:
+                Row phase = phases.get(event.getString("phase"));
+                if (phase != null) {
+                    phase.record(event.getDuration("phaseTime"), event.getDouble("distance"));
+                }
+                return true;
+            case FlightEvents.RIDE_COMPLETED:
+                total.record(event.getDuration("totalTime"), event.getDouble("rideDistance"));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void printReport() {
+        System.out.printf("%-34s %9s %10s %10s %10s %10s %10s %9s\n",
+                "Phase", "Count", "Mean", "p50", "p99", "Max", "Distance", "Share");
+        printRow(enqueue, "");
+        printRow(search, "");
+        printRow(orderWait, "");
+        printRow(expectedPickup, "");
+
+        long movementNanos = 0;
+        for (Row row : phases.values()) {
+            movementNanos += Math.round(row.nanos.getMean() * row.nanos.getCount());
+        }
+        for (Row row : phases.values()) {
+            double share = movementNanos == 0 ? 0 : row.nanos.getMean() * row.nanos.getCount() / movementNanos;
+            printRow(row, String.format("%8.1f%%", share * 100));
+        }
+        printRow(total, "");
+
+        long searches = search.nanos.getCount();
+        System.out.println();
+        System.out.printf("Enqueue attempts rejected: %d\n", rejected);
+        System.out.printf("Searches without a taxi: %d of %d | Mean candidate pool: %.1f\n",
+                emptySearches, searches, searches == 0 ? 0 : (double) candidates / searches);
+    }
+
+    private static void printRow(Row row, String share) {
+        LatencyHistogram nanos = row.nanos;
+        if (nanos.getCount() == 0) {
+            return;
+        }
+        System.out.printf("%-34s %9d %10.2f %10.2f %10.2f %10.2f %10.2f %9s\n",
+                row.label, nanos.getCount(),
+                nanos.getMean() / row.divisor,
+                nanos.valueAtPercentile(50) / row.divisor,
+                nanos.valueAtPercentile(99) / row.divisor,
+                nanos.getMax() / row.divisor,
+                row.distance / nanos.getCount(),
+                share);
+    }
+}
@@ -0,0 +1,37 @@
+class LatencyStats {
+    private final LatencyHistogram waitMillis;
+    private final LatencyHistogram dispatchNanos;
+    private final LatencyHistogram pickupMillis;
+    private final LatencyHistogram tripMillis;
+
+    public LatencyStats() {
+        this.waitMillis = new LatencyHistogram();
+        this.dispatchNanos = new LatencyHistogram();
+        this.pickupMillis = new LatencyHistogram();
+        this.tripMillis = new LatencyHistogram();
+    }
+
+    public LatencyHistogram getWaitMillis() { return waitMillis; }
+    public LatencyHistogram getDispatchNanos() { return dispatchNanos; }
+    public LatencyHistogram getPickupMillis() { return pickupMillis; }
+    public LatencyHistogram getTripMillis() { return tripMillis; }
+
+    public void printReport() {
+        System.out.println("[Latency] LATENCY PERCENTILES");
+        System.out.printf("[Latency] %-28s %8s %10s %10s %10s %10s\n",
+                "Phase", "Count", "p50", "p99", "p99.9", "Max");
+        printRow("Wait for assignment (s)", waitMillis, 1000.0);
+        printRow("Dispatch decision (us)", dispatchNanos, 1000.0);
+        printRow("Pickup travel (s)", pickupMillis, 1000.0);
+        printRow("Full trip (s)", tripMillis, 1000.0);
+    }
+
+    private static void printRow(String label, LatencyHistogram histogram, double divisor) {
+        System.out.printf("[Latency] %-28s %8d %10.2f %10.2f %10.2f %10.2f\n",
+                label, histogram.getCount(),
+                histogram.valueAtPercentile(50) / divisor,
+                histogram.valueAtPercentile(99) / divisor,
+                histogram.valueAtPercentile(99.9) / divisor,
+                histogram.getMax() / divisor);
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+class LoadGenerator implements Runnable {
+    enum Profile {
+        POISSON, CONSTANT, BURSTY
+    }
+
+    private static final long BURST_CYCLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double BURST_FRACTION = 0.2;
+    private static final double BURST_FACTOR = 4.0;
+    private static final double QUIET_FACTOR = (1 - BURST_FRACTION * BURST_FACTOR) / (1 - BURST_FRACTION);
+    private static final long PARK_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long PARK_SLACK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final BlockingQueue<RideRequest> requestQueue;
+    private final RideIntake intake;
+    private final double priorityShare;
+    private final DemandModel demand;
+    private final Profile profile;
+    private final double requestsPerSecond;
+    private final int producers;
+    private final long totalOrders;
+    private final long durationMillis;
+    private final long seed;
+    private final AtomicLong claimed;
+    private final AtomicLong generated;
+    private final AtomicLong maxLagNanos;
+    private volatile boolean running;
+    private volatile long startNanos;
+    private volatile long finishNanos;
+
+    public LoadGenerator(BlockingQueue<RideRequest> requestQueue, DemandModel demand, Profile profile,
+                         double requestsPerSecond, int producers, long totalOrders, long durationMillis, long seed) {
+        this(requestQueue, null, 0, demand, profile, requestsPerSecond, producers, totalOrders, durationMillis, seed);
+    }
+
+    public LoadGenerator(RideIntake intake, double priorityShare, DemandModel demand, Profile profile,
+                         double requestsPerSecond, int producers, long totalOrders, long durationMillis, long seed) {
+        this(null, intake, priorityShare, demand, profile, requestsPerSecond, producers, totalOrders, durationMillis, seed);
+    }
+
+    private LoadGenerator(BlockingQueue<RideRequest> requestQueue, RideIntake intake, double priorityShare,
+                          DemandModel demand, Profile profile, double requestsPerSecond, int producers,
+                          long totalOrders, long durationMillis, long seed) {
+        this.requestQueue = requestQueue;
+        this.intake = intake;
+        this.priorityShare = priorityShare;
+        this.demand = demand;
+        this.profile = profile;
+        this.requestsPerSecond = requestsPerSecond;
+        this.producers = Math.max(1, producers);
+        this.totalOrders = totalOrders;
+        this.durationMillis = durationMillis;
+        this.seed = seed;
+        this.claimed = new AtomicLong();
+        this.generated = new AtomicLong();
+        this.maxLagNanos = new AtomicLong();
+        this.running = true;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+    }
+
+    public double getAchievedRate() {
+        long end = finishNanos == 0 ? System.nanoTime() : finishNanos;
+        long elapsed = end - startNanos;
+        return elapsed <= 0 ? 0 : generated.get() * 1e9 / elapsed;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        long startMillis = System.currentTimeMillis();
+        startNanos = start;
+        long deadline = durationMillis > 0 ? start + TimeUnit.MILLISECONDS.toNanos(durationMillis) : Long.MAX_VALUE;
+
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Thread> threads = new ArrayList<>(producers);
+        for (int i = 0; i < producers; i++) {
+            SplittableRandom random = root.split();
+            Thread thread = new Thread(() -> produce(random, start, startMillis, deadline), "Load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            running = false;
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+        finishNanos = System.nanoTime();
+        EventLog.log(LogEvent.GENERATOR_FINISHED, generated.get());
+    }
+
+    private void produce(SplittableRandom random, long start, long startMillis, long deadline) {
+        double ratePerProducer = requestsPerSecond / producers;
+        long intended = start;
+        long lag = 0;
+
+        try {
+            while (running) {
+                intended += nextIntervalNanos(random, ratePerProducer, intended - start);
+                if (intended >= deadline || (totalOrders > 0 && claimed.getAndIncrement() >= totalOrders)) {
+                    break;
+                }
+
+                long now = waitUntil(intended);
+                lag = Math.max(lag, now - intended);
+
+                Location pickup = demand.samplePickup(random);
+                Location destination = demand.sampleDestination(pickup, random);
+                long timestamp = startMillis + TimeUnit.NANOSECONDS.toMillis(intended - start);
+                RideRequest request = new RideRequest(pickup, destination, timestamp);
+                if (intake == null) {
+                    requestQueue.put(request);
+                } else {
+                    intake.offer(request, random.nextDouble() < priorityShare
+                            ? RideIntake.Lane.PRIORITY
+                            : RideIntake.Lane.STANDARD);
+                }
+                generated.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+        }
+    }
+
+    private long nextIntervalNanos(SplittableRandom random, double rate, long elapsedNanos) {
+        switch (profile) {
+            case CONSTANT:
+                return (long) (1e9 / rate);
+            case BURSTY:
+                boolean burst = elapsedNanos % BURST_CYCLE_NANOS < BURST_CYCLE_NANOS * BURST_FRACTION;
+                return exponentialNanos(random, rate * (burst ? BURST_FACTOR : QUIET_FACTOR));
+            case POISSON:
+            default:
+                return exponentialNanos(random, rate);
+        }
+    }
+
+    private static long exponentialNanos(SplittableRandom random, double rate) {
+        return Math.max(1, (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9));
+    }
+
+    private long waitUntil(long intended) throws InterruptedException {
+        long now = System.nanoTime();
+        while (now < intended) {
+            long remaining = intended - now;
+            if (remaining > PARK_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - PARK_SLACK_NANOS);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            } else {
+                Thread.onSpinWait();
+            }
+            now = System.nanoTime();
+        }
+        return now;
+    }
+}
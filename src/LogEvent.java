@@ -0,0 +1,48 @@
+enum LogEvent {
+    TAXI_RECEIVED(EventLog.Level.DETAIL, "[Taxi-%d] Received order #%d: (%.2f, %.2f) -> (%.2f, %.2f) (%.2f km)", "llddddd"),
+    TAXI_TO_PICKUP(EventLog.Level.DETAIL, "[Taxi-%d] To pick up driving to (%.2f, %.2f) (%.2f units, %d ms)", "ldddl"),
+    TAXI_WITH_PASSENGER(EventLog.Level.DETAIL, "[Taxi-%d] With passenger driving to (%.2f, %.2f) (%.2f units, %d ms)", "ldddl"),
+    TAXI_ARRIVED(EventLog.Level.DETAIL, "[Taxi-%d] Arrived at client, boarding", "l"),
+    TAXI_DELIVERED(EventLog.Level.DETAIL, "[Taxi-%d] Passenger delivered, disembarking", "l"),
+    TAXI_REPOSITIONING(EventLog.Level.DETAIL, "[Taxi-%d] Repositioning toward demand at (%.2f, %.2f) (%.2f units, %d ms)", "ldddl"),
+    TAXI_RIDE_COMPLETED(EventLog.Level.DETAIL, "[Taxi-%d] Ride #%d completed", "ll"),
+    TAXI_SHUTDOWN(EventLog.Level.INFO, "[Taxi-%d] Shutting down", "l"),
+
+    DISPATCHER_REGISTERED(EventLog.Level.DETAIL, "[Dispatcher] Registered Taxi-%d at (%.2f, %.2f)", "ldd"),
+    DISPATCHER_NEW_ORDER(EventLog.Level.DETAIL, "[Dispatcher] New order in queue: #%d: (%.2f, %.2f) -> (%.2f, %.2f) (%.2f km)", "lddddd"),
+    DISPATCHER_ASSIGNED(EventLog.Level.DETAIL, "[Dispatcher] Order #%d assigned to Taxi-%d", "ll"),
+    DISPATCHER_CHAINED(EventLog.Level.DETAIL, "[Dispatcher] Order #%d chained to Taxi-%d, free in %d ms", "lll"),
+    DISPATCHER_POOLED(EventLog.Level.DETAIL, "[Dispatcher] Order #%d pooled into Taxi-%d route (%d stops, +%.2f units)", "llld"),
+    DISPATCHER_BORROWED(EventLog.Level.DETAIL, "[Dispatcher] Borrowed Taxi-%d from a neighbouring zone for order #%d", "ll"),
+    DISPATCHER_PENDING_MATCHED(EventLog.Level.DETAIL, "[Dispatcher] Taxi-%d picked up waiting order #%d (%d still waiting)", "lll"),
+    DISPATCHER_NO_TAXI(EventLog.Level.DETAIL, "[Dispatcher] No available taxis for order #%d, waiting for the next free taxi", "l"),
+    DISPATCHER_BATCH(EventLog.Level.DETAIL, "[Dispatcher] Batch of %d orders: %d assigned, %d waiting", "lll"),
+    DISPATCHER_REBALANCED(EventLog.Level.DETAIL, "[Dispatcher] Sent %d of %d idle taxis toward under-served cells", "ll"),
+    DISPATCHER_RIDE_COMPLETED(EventLog.Level.DETAIL, "[Dispatcher] Ride #%d completed. Total: %d", "ll"),
+
+    GENERATOR_CREATED(EventLog.Level.DETAIL, "[Generator] Created order #%d (%d/%d) distance: %.2f", "llld"),
+    GENERATOR_FINISHED(EventLog.Level.INFO, "[Generator] Finished creating %d orders", "l"),
+
+    INTAKE_REJECTED(EventLog.Level.DETAIL, "[Intake] Order #%d rejected, lane full at %d orders", "ll"),
+    INTAKE_EXPIRED(EventLog.Level.DETAIL, "[Intake] Order #%d shed after waiting %d ms", "ll"),
+
+    JOURNAL_SNAPSHOT(EventLog.Level.INFO, "[Journal] Snapshot at record %d: %d taxis, %d open orders, %d completed", "llll"),
+
+    TRACE_FINISHED(EventLog.Level.INFO, "[Trace] Replayed %d requests (%d lines skipped)", "ll"),
+
+    SIMULATION_FINISHED(EventLog.Level.INFO, "[Simulation] Finished: %d events, simulated time %.1f seconds", "ld");
+
+    private final EventLog.Level level;
+    private final String format;
+    private final String signature;
+
+    LogEvent(EventLog.Level level, String format, String signature) {
+        this.level = level;
+        this.format = format;
+        this.signature = signature;
+    }
+
+    EventLog.Level getLevel() { return level; }
+    String getFormat() { return format; }
+    String getSignature() { return signature; }
+}
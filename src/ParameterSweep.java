@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class ParameterSweep {
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+    private static final String HEADER = "taxis,orders,min_distance,replicate,seed,completed,waiting,"
+            + "simulated_s,rides_per_hour,avg_wait_s,p50_wait_s,p99_wait_s,avg_pickup_distance,pooled,distance_per_ride,repositioned,p99_pickup_s";
+
+    private static final class Run {
+        private final SimulationConfig config;
+        private final int replicate;
+
+        private Run(SimulationConfig config, int replicate) {
+            this.config = config;
+            this.replicate = replicate;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        SimulationConfig config = SimulationConfig.fromArgs(args);
+        int[] fleetSizes = config.getIntList(SimulationConfig.TAXIS, 50);
+        int[] orderCounts = config.getIntList(SimulationConfig.ORDERS, 1000);
+        double[] minDistances = config.getDoubleList(SimulationConfig.MIN_DISTANCE, 20.0);
+        int replicates = config.getInt("replicates", 3);
+        int parallelism = config.getInt("parallelism", Runtime.getRuntime().availableProcessors());
+        long seed = config.getLong(SimulationConfig.SEED, 42);
+        String output = config.has("out") ? config.getString("out") : "sweep.csv";
+        EventLog.setLevel(EventLog.Level.WARN);
+
+        List<Run> runs = new ArrayList<>();
+        for (int taxis : fleetSizes) {
+            for (int orders : orderCounts) {
+                for (double minDistance : minDistances) {
+                    for (int replicate = 0; replicate < replicates; replicate++) {
+                        long runSeed = seed + runs.size() * SEED_STRIDE;
+                        runs.add(new Run(config.with(SimulationConfig.TAXIS, taxis)
+                                .with(SimulationConfig.ORDERS, orders)
+                                .with(SimulationConfig.MIN_DISTANCE, minDistance)
+                                .with(SimulationConfig.SEED, runSeed), replicate));
+                    }
+                }
+            }
+        }
+
+        System.out.println("PARAMETER SWEEP\n");
+        System.out.printf("Runs: %d (%d fleet sizes x %d order counts x %d distances x %d replicates) | Parallelism: %d | Seed: %d\n",
+                runs.size(), fleetSizes.length, orderCounts.length, minDistances.length, replicates, parallelism, seed);
+        System.out.printf("Batching: %s | Zones: %s | ETA: %s | Pooling: %s | Rebalancing: %s | Roads: %s | Output: %s\n\n",
+                config.isBatch(), config.isZones(), config.isEta(), config.isPool(), config.isRebalance(),
+                config.isRoads(), output);
+
+        TravelModel travel = config.isRoads() ? RoadNetwork.fromConfig(config, seed) : StraightLineTravel.INSTANCE;
+        List<Callable<String>> tasks = new ArrayList<>(runs.size());
+        for (Run run : runs) {
+            tasks.add(() -> simulate(run, travel));
+        }
+
+        long startNanos = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Future<String>> results;
+        try {
+            results = pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8))) {
+            writer.println(HEADER);
+            for (Future<String> result : results) {
+                writer.println(result.get());
+            }
+        }
+        long wallMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.printf("[Sweep] Wrote %d rows to %s in %d ms\n", results.size(), output, wallMillis);
+    }
+
+    private static String simulate(Run run, TravelModel travel) {
+        SimulationConfig config = run.config;
+        long seed = config.getSeed();
+        Random random = new Random(seed);
+        Dispatcher dispatcher = config.isZones()
+                ? new ZonedDispatcher(new LinkedBlockingQueue<>(), config.getInt("zonesPerSide", 4))
+                : new Dispatcher(new LinkedBlockingQueue<>());
+        dispatcher.setTravelModel(travel);
+        if (config.isBatch()) {
+            dispatcher.enableBatching(config.getLong("batchWindowMillis", 200), config.getInt("maxBatchSize", 64));
+        }
+        if (config.isEta()) {
+            dispatcher.enableEtaDispatch();
+        }
+        if (config.isPool()) {
+            dispatcher.enablePooling(config.getPoolCapacity(), config.getMaxDetour(),
+                    config.getMaxPickupWaitMillis());
+        }
+        if (config.isRebalance()) {
+            dispatcher.enableRebalancing(config.getRebalanceIntervalMillis(), config.getDemandHalfLifeMillis());
+        }
+
+        for (int i = 1; i <= config.getTaxis(); i++) {
+            Location start = new Location(random.nextDouble() * 100, random.nextDouble() * 100);
+            dispatcher.registerTaxi(new Taxi(i, start, dispatcher));
+        }
+
+        CustomerGenerator generator = new CustomerGenerator(null, config.getOrders(), config.getMinDistance(),
+                new Random(seed + 1));
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation(dispatcher, generator);
+        simulation.run();
+
+        LatencyHistogram wait = dispatcher.getLatencyStats().getWaitMillis();
+        double simulatedSeconds = simulation.getSimulatedTimeMillis() / 1000.0;
+        int completed = dispatcher.getCompletedRides();
+        return String.format(Locale.ROOT, "%d,%d,%.2f,%d,%d,%d,%d,%.3f,%.2f,%.3f,%.3f,%.3f,%.3f,%d,%.3f,%d,%.3f",
+                config.getTaxis(), config.getOrders(), config.getMinDistance(), run.replicate, seed,
+                completed, dispatcher.getPendingOrders(), simulatedSeconds,
+                simulatedSeconds == 0 ? 0 : completed * 3600.0 / simulatedSeconds,
+                dispatcher.getAveragePickupWaitMillis() / 1000.0,
+                wait.valueAtPercentile(50) / 1000.0, wait.valueAtPercentile(99) / 1000.0,
+                dispatcher.getAveragePickupDistance(), dispatcher.getPooledRides(),
+                completed == 0 ? 0 : dispatcher.getTotalDistanceDriven() / completed,
+                dispatcher.getRepositionedTaxis(),
+                dispatcher.getLatencyStats().getPickupMillis().valueAtPercentile(99) / 1000.0);
+    }
+}
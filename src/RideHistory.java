@@ -0,0 +1,335 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+class RideHistory implements RideListener {
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+    static final int ROW_BYTES = 2 * Integer.BYTES + 3 * Long.BYTES + 6 * Float.BYTES;
+    static final long NO_TIME = -1;
+
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final int MAX_CHUNKS = 1 << 12;
+    private static final long HOUR_MILLIS = 3_600_000;
+    private static final int OPEN_CAPACITY = 256;
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private static final int REQUEST_ID = 0;
+    private static final int TAXI_ID = REQUEST_ID + CHUNK_ROWS * Integer.BYTES;
+    private static final int REQUESTED_AT = TAXI_ID + CHUNK_ROWS * Integer.BYTES;
+    private static final int ASSIGNED_AT = REQUESTED_AT + CHUNK_ROWS * Long.BYTES;
+    private static final int COMPLETED_AT = ASSIGNED_AT + CHUNK_ROWS * Long.BYTES;
+    private static final int PICKUP_X = COMPLETED_AT + CHUNK_ROWS * Long.BYTES;
+    private static final int PICKUP_Y = PICKUP_X + CHUNK_ROWS * Float.BYTES;
+    private static final int DROPOFF_X = PICKUP_Y + CHUNK_ROWS * Float.BYTES;
+    private static final int DROPOFF_Y = DROPOFF_X + CHUNK_ROWS * Float.BYTES;
+    private static final int PICKUP_DISTANCE = DROPOFF_Y + CHUNK_ROWS * Float.BYTES;
+    private static final int RIDE_DISTANCE = PICKUP_DISTANCE + CHUNK_ROWS * Float.BYTES;
+    private static final int CHUNK_BYTES = CHUNK_ROWS * ROW_BYTES;
+
+    private final AtomicReferenceArray<ByteBuffer> chunks;
+    private volatile long size;
+    private volatile int highestTaxiId;
+    private volatile long firstRequestedAt;
+    private volatile long lastCompletedAt;
+    private int[] openIds;
+    private long[] openAssignedAt;
+    private float[] openPickupDistance;
+    private int openCount;
+    private volatile RideListener downstream;
+
+    public RideHistory() {
+        this.chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+        this.firstRequestedAt = Long.MAX_VALUE;
+        this.lastCompletedAt = Long.MIN_VALUE;
+        this.openIds = new int[OPEN_CAPACITY];
+        this.openAssignedAt = new long[OPEN_CAPACITY];
+        this.openPickupDistance = new float[OPEN_CAPACITY];
+        Arrays.fill(openIds, EMPTY);
+    }
+
+    public void setRideListener(RideListener listener) {
+        this.downstream = listener;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getChunkCount() {
+        return chunkCount(size);
+    }
+
+    public long getOffHeapBytes() {
+        return (long) getChunkCount() * CHUNK_BYTES;
+    }
+
+    public int getHighestTaxiId() {
+        return highestTaxiId;
+    }
+
+    public long getFirstRequestedAt() {
+        return size == 0 ? NO_TIME : firstRequestedAt;
+    }
+
+    public long getLastCompletedAt() {
+        return size == 0 ? NO_TIME : lastCompletedAt;
+    }
+
+    @Override
+    public void onSubmitted(RideRequest request) {
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onSubmitted(request);
+        }
+    }
+
+    @Override
+    public void onAssigned(RideRequest request, Taxi taxi, long timeMillis, double pickupDistance) {
+        synchronized (this) {
+            putOpen(request.getId(), timeMillis, (float) pickupDistance);
+        }
+
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onAssigned(request, taxi, timeMillis, pickupDistance);
+        }
+    }
+
+    @Override
+    public void onCompleted(RideRequest request, Taxi taxi, long timeMillis) {
+        append(request, taxi.getId(), timeMillis);
+
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onCompleted(request, taxi, timeMillis);
+        }
+    }
+
+    @Override
+    public void onShed(RideRequest request) {
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onShed(request);
+        }
+    }
+
+    private synchronized void append(RideRequest request, int taxiId, long completedAt) {
+        long row = size;
+        int chunkIndex = (int) (row >>> CHUNK_BITS);
+        if (chunkIndex >= MAX_CHUNKS) {
+            throw new IllegalStateException("Ride history is full at " + row + " rides");
+        }
+        ByteBuffer chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunk = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder());
+            chunks.set(chunkIndex, chunk);
+        }
+
+        int slot = openSlot(request.getId());
+        long assignedAt = slot < 0 ? NO_TIME : openAssignedAt[slot];
+        float pickupDistance = slot < 0 ? Float.NaN : openPickupDistance[slot];
+        if (slot >= 0) {
+            removeOpen(slot);
+        }
+
+        int offset = (int) (row & CHUNK_MASK);
+        Location pickup = request.getPickupLocation();
+        Location dropoff = request.getDestination();
+        chunk.putInt(REQUEST_ID + offset * Integer.BYTES, request.getId());
+        chunk.putInt(TAXI_ID + offset * Integer.BYTES, taxiId);
+        chunk.putLong(REQUESTED_AT + offset * Long.BYTES, request.getTimestamp());
+        chunk.putLong(ASSIGNED_AT + offset * Long.BYTES, assignedAt);
+        chunk.putLong(COMPLETED_AT + offset * Long.BYTES, completedAt);
+        chunk.putFloat(PICKUP_X + offset * Float.BYTES, (float) pickup.getX());
+        chunk.putFloat(PICKUP_Y + offset * Float.BYTES, (float) pickup.getY());
+        chunk.putFloat(DROPOFF_X + offset * Float.BYTES, (float) dropoff.getX());
+        chunk.putFloat(DROPOFF_Y + offset * Float.BYTES, (float) dropoff.getY());
+        chunk.putFloat(PICKUP_DISTANCE + offset * Float.BYTES, pickupDistance);
+        chunk.putFloat(RIDE_DISTANCE + offset * Float.BYTES, (float) request.getRideDistance());
+
+        if (taxiId > highestTaxiId) {
+            highestTaxiId = taxiId;
+        }
+        if (request.getTimestamp() < firstRequestedAt) {
+            firstRequestedAt = request.getTimestamp();
+        }
+        if (completedAt > lastCompletedAt) {
+            lastCompletedAt = completedAt;
+        }
+        size = row + 1;
+    }
+
+    public long[] zoneDemand(int zonesPerSide, double mapSize) {
+        long rows = size;
+        double scale = zonesPerSide / mapSize;
+        return IntStream.range(0, chunkCount(rows)).parallel()
+                .mapToObj(index -> {
+                    ByteBuffer chunk = chunks.get(index);
+                    int count = rowsIn(index, rows);
+                    long[] demand = new long[zonesPerSide * zonesPerSide];
+                    for (int i = 0; i < count; i++) {
+                        int column = cell(chunk.getFloat(PICKUP_X + i * Float.BYTES) * scale, zonesPerSide);
+                        int row = cell(chunk.getFloat(PICKUP_Y + i * Float.BYTES) * scale, zonesPerSide);
+                        demand[row * zonesPerSide + column]++;
+                    }
+                    return demand;
+                })
+                .reduce(RideHistory::merge)
+                .orElse(new long[zonesPerSide * zonesPerSide]);
+    }
+
+    public long[] hourlyThroughput(long originMillis) {
+        long rows = size;
+        return IntStream.range(0, chunkCount(rows)).parallel()
+                .mapToObj(index -> {
+                    ByteBuffer chunk = chunks.get(index);
+                    int count = rowsIn(index, rows);
+                    long[] hours = new long[1];
+                    for (int i = 0; i < count; i++) {
+                        long completedAt = chunk.getLong(COMPLETED_AT + i * Long.BYTES);
+                        int hour = (int) Math.max(0, (completedAt - originMillis) / HOUR_MILLIS);
+                        if (hour >= hours.length) {
+                            hours = Arrays.copyOf(hours, Math.max(hour + 1, hours.length * 2));
+                        }
+                        hours[hour]++;
+                    }
+                    return hours;
+                })
+                .reduce(RideHistory::merge)
+                .map(RideHistory::trimTrailingZeros)
+                .orElse(new long[0]);
+    }
+
+    public double[] taxiUtilization(long fromMillis, long toMillis) {
+        long rows = size;
+        int taxiSlots = highestTaxiId + 1;
+        long window = Math.max(1, toMillis - fromMillis);
+        long[] busy = IntStream.range(0, chunkCount(rows)).parallel()
+                .mapToObj(index -> {
+                    ByteBuffer chunk = chunks.get(index);
+                    int count = rowsIn(index, rows);
+                    long[] busyMillis = new long[taxiSlots];
+                    for (int i = 0; i < count; i++) {
+                        long assignedAt = chunk.getLong(ASSIGNED_AT + i * Long.BYTES);
+                        if (assignedAt == NO_TIME) {
+                            continue;
+                        }
+                        int taxiId = chunk.getInt(TAXI_ID + i * Integer.BYTES);
+                        long start = Math.max(fromMillis, assignedAt);
+                        long end = Math.min(toMillis, chunk.getLong(COMPLETED_AT + i * Long.BYTES));
+                        if (end > start && taxiId < taxiSlots) {
+                            busyMillis[taxiId] += end - start;
+                        }
+                    }
+                    return busyMillis;
+                })
+                .reduce(RideHistory::merge)
+                .orElse(new long[taxiSlots]);
+
+        double[] utilization = new double[busy.length];
+        for (int id = 0; id < busy.length; id++) {
+            utilization[id] = Math.min(1.0, (double) busy[id] / window);
+        }
+        return utilization;
+    }
+
+    private static int chunkCount(long rows) {
+        return (int) ((rows + CHUNK_MASK) >>> CHUNK_BITS);
+    }
+
+    private static int rowsIn(int chunkIndex, long rows) {
+        return (int) Math.min(CHUNK_ROWS, rows - ((long) chunkIndex << CHUNK_BITS));
+    }
+
+    private static int cell(double scaled, int cells) {
+        return Math.max(0, Math.min(cells - 1, (int) scaled));
+    }
+
+    private static long[] merge(long[] left, long[] right) {
+        long[] total = left.length >= right.length ? left : right;
+        long[] other = total == left ? right : left;
+        for (int i = 0; i < other.length; i++) {
+            total[i] += other[i];
+        }
+        return total;
+    }
+
+    private static long[] trimTrailingZeros(long[] values) {
+        int length = values.length;
+        while (length > 0 && values[length - 1] == 0) {
+            length--;
+        }
+        return Arrays.copyOf(values, length);
+    }
+
+    private void putOpen(int requestId, long assignedAt, float pickupDistance) {
+        if ((openCount + 1) * 2 > openIds.length) {
+            growOpen();
+        }
+        int mask = openIds.length - 1;
+        int slot = mix(requestId) & mask;
+        while (openIds[slot] != EMPTY && openIds[slot] != requestId) {
+            slot = (slot + 1) & mask;
+        }
+        if (openIds[slot] == EMPTY) {
+            openIds[slot] = requestId;
+            openCount++;
+        }
+        openAssignedAt[slot] = assignedAt;
+        openPickupDistance[slot] = pickupDistance;
+    }
+
+    private int openSlot(int requestId) {
+        int mask = openIds.length - 1;
+        int slot = mix(requestId) & mask;
+        while (openIds[slot] != EMPTY) {
+            if (openIds[slot] == requestId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeOpen(int slot) {
+        int mask = openIds.length - 1;
+        openIds[slot] = EMPTY;
+        openCount--;
+        int next = (slot + 1) & mask;
+        while (openIds[next] != EMPTY) {
+            int home = mix(openIds[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                openIds[slot] = openIds[next];
+                openAssignedAt[slot] = openAssignedAt[next];
+                openPickupDistance[slot] = openPickupDistance[next];
+                openIds[next] = EMPTY;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void growOpen() {
+        int[] ids = openIds;
+        long[] assignedAt = openAssignedAt;
+        float[] pickupDistance = openPickupDistance;
+        openIds = new int[ids.length * 2];
+        openAssignedAt = new long[ids.length * 2];
+        openPickupDistance = new float[ids.length * 2];
+        Arrays.fill(openIds, EMPTY);
+        openCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != EMPTY) {
+                putOpen(ids[i], assignedAt[i], pickupDistance[i]);
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,408 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+class RideIntake implements Flow.Publisher<RideRequest> {
+    enum Lane {
+        PRIORITY, STANDARD
+    }
+
+    static final int DEFAULT_CAPACITY = 256;
+    static final long DEFAULT_TTL_MILLIS = 0;
+    private static final int DRAIN_BATCH = 64;
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final ArrayDeque<RideRequest> priorityLane;
+    private final ArrayDeque<RideRequest> standardLane;
+    private final ReentrantLock lock;
+    private final Condition notFull;
+    private final AtomicLong requested;
+    private final AtomicInteger wip;
+    private final AtomicLongArray admitted;
+    private final AtomicLongArray rejected;
+    private final AtomicLongArray expired;
+    private final AtomicLong delivered;
+    private final AtomicIntegerArray depth;
+    private final AtomicLongArray headTimestamp;
+    private final RideRequest[] batch;
+    private int peakBuffered;
+    private volatile Flow.Subscriber<? super RideRequest> subscriber;
+    private volatile Consumer<RideRequest> shedListener;
+    private volatile boolean cancelled;
+    private volatile boolean closed;
+    private boolean completed;
+
+    public RideIntake(int capacity, long ttlMillis, LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Intake capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis > 0 ? ttlMillis : Long.MAX_VALUE;
+        this.clock = clock;
+        this.priorityLane = new ArrayDeque<>(capacity);
+        this.standardLane = new ArrayDeque<>(capacity);
+        this.lock = new ReentrantLock();
+        this.notFull = lock.newCondition();
+        this.requested = new AtomicLong();
+        this.wip = new AtomicInteger();
+        this.admitted = new AtomicLongArray(Lane.values().length);
+        this.rejected = new AtomicLongArray(Lane.values().length);
+        this.expired = new AtomicLongArray(Lane.values().length);
+        this.delivered = new AtomicLong();
+        this.depth = new AtomicIntegerArray(Lane.values().length);
+        this.headTimestamp = new AtomicLongArray(Lane.values().length);
+        this.batch = new RideRequest[DRAIN_BATCH];
+    }
+
+    static RideIntake fromConfig(SimulationConfig config, LongSupplier clock) {
+        return new RideIntake(config.getIntakeCapacity(), config.getOrderTtlMillis(), clock);
+    }
+
+    public void setShedListener(Consumer<RideRequest> listener) {
+        this.shedListener = listener;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis == Long.MAX_VALUE ? 0 : ttlMillis;
+    }
+
+    public long getAdmitted(Lane lane) {
+        return admitted.get(lane.ordinal());
+    }
+
+    public long getRejected(Lane lane) {
+        return rejected.get(lane.ordinal());
+    }
+
+    public long getExpired(Lane lane) {
+        return expired.get(lane.ordinal());
+    }
+
+    public long getShed() {
+        long total = 0;
+        for (Lane lane : Lane.values()) {
+            total += getRejected(lane) + getExpired(lane);
+        }
+        return total;
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public int getBuffered() {
+        lock.lock();
+        try {
+            return priorityLane.size() + standardLane.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPeakBuffered() {
+        lock.lock();
+        try {
+            return peakBuffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RideRequest> subscriber) {
+        boolean accepted;
+        lock.lock();
+        try {
+            accepted = this.subscriber == null;
+            if (accepted) {
+                this.subscriber = subscriber;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!accepted) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Ride intake already has a subscriber"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    cancelled = true;
+                    subscriber.onError(new IllegalArgumentException("Non-positive demand: " + n));
+                    return;
+                }
+                requested.accumulateAndGet(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        });
+        drain();
+    }
+
+    public boolean offer(RideRequest request, Lane lane) {
+        long now = clock.getAsLong();
+        if (closed) {
+            reject(request, lane);
+            return false;
+        }
+        if (isExpired(request, now)) {
+            shed(Collections.singletonList(request), lane, now);
+            return false;
+        }
+        if (depth.get(lane.ordinal()) >= capacity && now - headTimestamp.get(lane.ordinal()) <= ttlMillis) {
+            reject(request, lane);
+            return false;
+        }
+
+        List<RideRequest> stale;
+        boolean accepted;
+        lock.lock();
+        try {
+            ArrayDeque<RideRequest> queue = laneFor(lane);
+            stale = expireHead(queue, now);
+            accepted = queue.size() < capacity;
+            if (accepted) {
+                enqueue(queue, request, lane);
+            }
+            publishDepth(queue, lane);
+        } finally {
+            lock.unlock();
+        }
+
+        shed(stale, lane, now);
+        if (!accepted) {
+            reject(request, lane);
+            return false;
+        }
+        drain();
+        return true;
+    }
+
+    public boolean submit(RideRequest request, Lane lane) throws InterruptedException {
+        List<RideRequest> stale = new ArrayList<>();
+        boolean accepted = false;
+        lock.lockInterruptibly();
+        try {
+            ArrayDeque<RideRequest> queue = laneFor(lane);
+            while (!closed) {
+                long now = clock.getAsLong();
+                stale.addAll(expireHead(queue, now));
+                if (queue.size() < capacity) {
+                    enqueue(queue, request, lane);
+                    publishDepth(queue, lane);
+                    accepted = true;
+                    break;
+                }
+                publishDepth(queue, lane);
+                if (ttlMillis == Long.MAX_VALUE) {
+                    notFull.await();
+                } else {
+                    long untilHeadExpires = queue.peekFirst().getTimestamp() + ttlMillis - now + 1;
+                    notFull.await(Math.max(1, untilHeadExpires), TimeUnit.MILLISECONDS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        shed(stale, lane, clock.getAsLong());
+        if (!accepted) {
+            reject(request, lane);
+            return false;
+        }
+        drain();
+        return true;
+    }
+
+    public int expireStale() {
+        long now = clock.getAsLong();
+        List<RideRequest> stalePriority;
+        List<RideRequest> staleStandard;
+        lock.lock();
+        try {
+            stalePriority = expireHead(priorityLane, now);
+            staleStandard = expireHead(standardLane, now);
+            if (!stalePriority.isEmpty() || !staleStandard.isEmpty()) {
+                publishDepth(priorityLane, Lane.PRIORITY);
+                publishDepth(standardLane, Lane.STANDARD);
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        shed(stalePriority, Lane.PRIORITY, now);
+        shed(staleStandard, Lane.STANDARD, now);
+        return stalePriority.size() + staleStandard.size();
+    }
+
+    public void close() {
+        closed = true;
+        lock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    private ArrayDeque<RideRequest> laneFor(Lane lane) {
+        return lane == Lane.PRIORITY ? priorityLane : standardLane;
+    }
+
+    private void enqueue(ArrayDeque<RideRequest> queue, RideRequest request, Lane lane) {
+        queue.addLast(request);
+        admitted.incrementAndGet(lane.ordinal());
+        peakBuffered = Math.max(peakBuffered, priorityLane.size() + standardLane.size());
+    }
+
+    private void publishDepth(ArrayDeque<RideRequest> queue, Lane lane) {
+        RideRequest head = queue.peekFirst();
+        headTimestamp.set(lane.ordinal(), head == null ? Long.MAX_VALUE : head.getTimestamp());
+        depth.set(lane.ordinal(), queue.size());
+    }
+
+    private List<RideRequest> expireHead(ArrayDeque<RideRequest> queue, long now) {
+        List<RideRequest> stale = Collections.emptyList();
+        RideRequest head;
+        while ((head = queue.peekFirst()) != null && isExpired(head, now)) {
+            if (stale.isEmpty()) {
+                stale = new ArrayList<>();
+            }
+            stale.add(queue.pollFirst());
+        }
+        return stale;
+    }
+
+    private boolean isExpired(RideRequest request, long now) {
+        return now - request.getTimestamp() > ttlMillis;
+    }
+
+    private void shed(List<RideRequest> stale, Lane lane, long now) {
+        for (RideRequest request : stale) {
+            expired.incrementAndGet(lane.ordinal());
+            EventLog.log(LogEvent.INTAKE_EXPIRED, request.getId(), now - request.getTimestamp());
+            notifyShed(request);
+        }
+    }
+
+    private void reject(RideRequest request, Lane lane) {
+        rejected.incrementAndGet(lane.ordinal());
+        EventLog.log(LogEvent.INTAKE_REJECTED, request.getId(), capacity);
+        notifyShed(request);
+    }
+
+    private void notifyShed(RideRequest request) {
+        Consumer<RideRequest> listener = shedListener;
+        if (listener != null) {
+            listener.accept(request);
+        }
+    }
+
+    private int poll(long now, int limit) {
+        List<RideRequest> stalePriority;
+        List<RideRequest> staleStandard;
+        int count = 0;
+        lock.lock();
+        try {
+            stalePriority = expireHead(priorityLane, now);
+            staleStandard = expireHead(standardLane, now);
+            RideRequest next;
+            while (count < limit && (next = priorityLane.pollFirst()) != null) {
+                batch[count++] = next;
+            }
+            while (count < limit && (next = standardLane.pollFirst()) != null) {
+                batch[count++] = next;
+            }
+            if (count > 0 || !stalePriority.isEmpty() || !staleStandard.isEmpty()) {
+                publishDepth(priorityLane, Lane.PRIORITY);
+                publishDepth(standardLane, Lane.STANDARD);
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        shed(stalePriority, Lane.PRIORITY, now);
+        shed(staleStandard, Lane.STANDARD, now);
+        return count;
+    }
+
+    private boolean isDrained() {
+        lock.lock();
+        try {
+            return priorityLane.isEmpty() && standardLane.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super RideRequest> target = subscriber;
+            if (target != null && !cancelled) {
+                long demand;
+                while ((demand = requested.get()) > 0 && !cancelled) {
+                    int count = poll(clock.getAsLong(), (int) Math.min(demand, DRAIN_BATCH));
+                    if (count == 0) {
+                        break;
+                    }
+                    if (demand != Long.MAX_VALUE) {
+                        requested.addAndGet(-count);
+                    }
+                    delivered.addAndGet(count);
+                    for (int i = 0; i < count; i++) {
+                        RideRequest next = batch[i];
+                        batch[i] = null;
+                        target.onNext(next);
+                    }
+                }
+
+                if (closed && !completed && !cancelled && isDrained()) {
+                    completed = true;
+                    target.onComplete();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
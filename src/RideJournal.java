@@ -0,0 +1,517 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+class RideJournal implements RideListener, Closeable {
+    static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 10_000;
+
+    private static final int RECORD_BYTES = 64;
+    private static final int CHUNK_SHIFT = 24;
+    private static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+    private static final int MAX_CHUNKS = 1 << 10;
+    private static final long GROUP_COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final int SNAPSHOT_MAGIC = 0x524a534e;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final int TAXI = 1;
+    private static final int SUBMITTED = 2;
+    private static final int ASSIGNED = 3;
+    private static final int COMPLETED = 4;
+
+    private static final int TYPE = 0;
+    private static final int CHECKSUM = 4;
+    private static final int TIME = 8;
+    private static final int REQUEST = 16;
+    private static final int TAXI_ID = 20;
+    private static final int X1 = 24;
+    private static final int Y1 = 32;
+    private static final int X2 = 40;
+    private static final int Y2 = 48;
+
+    private static final VarHandle TYPES = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final class OpenRide {
+        private final RideRequest request;
+        private int taxiId = -1;
+
+        private OpenRide(RideRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static final class Ledger {
+        private final Map<Integer, Location> taxis = new TreeMap<>();
+        private final Map<Integer, OpenRide> open = new LinkedHashMap<>();
+        private int completed;
+        private int highestRequestId;
+
+        private void apply(int type, long time, int requestId, int taxiId, double x1, double y1, double x2, double y2) {
+            highestRequestId = Math.max(highestRequestId, requestId);
+            switch (type) {
+                case TAXI:
+                    taxis.put(taxiId, new Location(x1, y1));
+                    break;
+                case SUBMITTED:
+                    open.computeIfAbsent(requestId, id ->
+                            new OpenRide(new RideRequest(id, new Location(x1, y1), new Location(x2, y2), time)));
+                    break;
+                case ASSIGNED:
+                    OpenRide assigned = open.get(requestId);
+                    if (assigned != null) {
+                        assigned.taxiId = taxiId;
+                    }
+                    break;
+                case COMPLETED:
+                    OpenRide finished = open.remove(requestId);
+                    if (finished != null) {
+                        taxis.put(taxiId, finished.request.getDestination());
+                    }
+                    completed++;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journal record type " + type);
+            }
+        }
+    }
+
+    static final class Recovery {
+        private final TreeMap<Integer, Location> taxis;
+        private final List<OpenRide> open;
+        private final int completed;
+        private final int highestRequestId;
+        private final long snapshotPosition;
+        private final long replayedRecords;
+        private final long tailPosition;
+
+        private Recovery(Ledger ledger, long snapshotPosition, long replayedRecords, long tailPosition) {
+            this.taxis = new TreeMap<>(ledger.taxis);
+            this.open = new ArrayList<>(ledger.open.size());
+            for (OpenRide ride : ledger.open.values()) {
+                OpenRide copy = new OpenRide(ride.request);
+                copy.taxiId = ride.taxiId;
+                open.add(copy);
+            }
+            this.completed = ledger.completed;
+            this.highestRequestId = ledger.highestRequestId;
+            this.snapshotPosition = snapshotPosition;
+            this.replayedRecords = replayedRecords;
+            this.tailPosition = tailPosition;
+        }
+
+        public boolean isEmpty() {
+            return tailPosition == 0;
+        }
+
+        public long getSnapshotRecords() { return snapshotPosition / RECORD_BYTES; }
+        public long getReplayedRecords() { return replayedRecords; }
+        public int getCompletedRides() { return completed; }
+        public int getTaxiCount() { return taxis.size(); }
+        public int getOpenRides() { return open.size(); }
+
+        public int getHighestTaxiId() {
+            return taxis.isEmpty() ? 0 : taxis.lastKey();
+        }
+
+        public Location getTaxiLocation(int taxiId) {
+            return taxis.get(taxiId);
+        }
+
+        List<Taxi> restore(Dispatcher dispatcher, Map<Integer, Taxi> fleet, long nowMillis) {
+            RideRequest.reserveIdsThrough(highestRequestId);
+            dispatcher.restoreCompletedRides(completed);
+
+            List<Taxi> resumed = new ArrayList<>();
+            List<RideRequest> unassigned = new ArrayList<>();
+            for (OpenRide ride : open) {
+                Taxi taxi = ride.taxiId < 0 ? null : fleet.get(ride.taxiId);
+                if (taxi != null && dispatcher.restoreAssignment(taxi, ride.request, nowMillis)) {
+                    resumed.add(taxi);
+                } else {
+                    unassigned.add(ride.request);
+                }
+            }
+            for (RideRequest request : unassigned) {
+                Taxi taxi = dispatcher.dispatch(request, nowMillis);
+                if (taxi != null && taxi.getCurrentRequest() == request) {
+                    resumed.add(taxi);
+                }
+            }
+            return resumed;
+        }
+    }
+
+    private final Path snapshotPath;
+    private final FileChannel channel;
+    private final AtomicReferenceArray<MappedByteBuffer> chunks;
+    private final AtomicLong tail;
+    private final Ledger ledger;
+    private final Recovery recovery;
+    private final long snapshotIntervalMillis;
+    private final Thread committer;
+    private volatile long applied;
+    private volatile long durable;
+    private volatile boolean closed;
+    private volatile long commits;
+    private volatile long snapshots;
+    private volatile RideListener downstream;
+
+    private RideJournal(Path path, Ledger ledger, Recovery recovery, long snapshotIntervalMillis) throws IOException {
+        this.snapshotPath = snapshotPathOf(path);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.truncate(recovery.tailPosition);
+        this.chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+        this.tail = new AtomicLong(recovery.tailPosition);
+        this.ledger = ledger;
+        this.recovery = recovery;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.applied = recovery.tailPosition;
+        this.durable = recovery.tailPosition;
+        this.committer = new Thread(this::commitLoop, "Journal");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    static RideJournal open(Path path, long snapshotIntervalMillis) throws IOException {
+        Ledger ledger = new Ledger();
+        return new RideJournal(path, ledger, recover(path, ledger), snapshotIntervalMillis);
+    }
+
+    public Recovery getRecovery() {
+        return recovery;
+    }
+
+    public void setRideListener(RideListener listener) {
+        this.downstream = listener;
+    }
+
+    public long getRecords() {
+        return tail.get() / RECORD_BYTES;
+    }
+
+    public long getDurableRecords() {
+        return durable / RECORD_BYTES;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    void recordTaxis(Collection<Taxi> taxis, long nowMillis) {
+        for (Taxi taxi : taxis) {
+            Location location = taxi.getCurrentLocation();
+            append(TAXI, nowMillis, 0, taxi.getId(), location.getX(), location.getY(), 0, 0);
+        }
+    }
+
+    @Override
+    public void onSubmitted(RideRequest request) {
+        Location pickup = request.getPickupLocation();
+        Location destination = request.getDestination();
+        append(SUBMITTED, request.getTimestamp(), request.getId(), 0,
+                pickup.getX(), pickup.getY(), destination.getX(), destination.getY());
+
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onSubmitted(request);
+        }
+    }
+
+    @Override
+    public void onAssigned(RideRequest request, Taxi taxi, long timeMillis, double pickupDistance) {
+        append(ASSIGNED, timeMillis, request.getId(), taxi.getId(), 0, 0, 0, 0);
+
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onAssigned(request, taxi, timeMillis, pickupDistance);
+        }
+    }
+
+    @Override
+    public void onCompleted(RideRequest request, Taxi taxi, long timeMillis) {
+        append(COMPLETED, timeMillis, request.getId(), taxi.getId(), 0, 0, 0, 0);
+
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onCompleted(request, taxi, timeMillis);
+        }
+    }
+
+    @Override
+    public void onShed(RideRequest request) {
+        RideListener listener = downstream;
+        if (listener != null) {
+            listener.onShed(request);
+        }
+    }
+
+    void sync() {
+        long target = tail.get();
+        while (durable < target) {
+            LockSupport.unpark(committer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        closed = true;
+        LockSupport.unpark(committer);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeSnapshot(durable);
+        channel.close();
+    }
+
+    private void append(int type, long time, int requestId, int taxiId, double x1, double y1, double x2, double y2) {
+        long position = tail.getAndAdd(RECORD_BYTES);
+        MappedByteBuffer chunk = chunk((int) (position >>> CHUNK_SHIFT));
+        int offset = (int) (position & (CHUNK_BYTES - 1));
+        chunk.putInt(offset + CHECKSUM, checksum(type, time, requestId, taxiId, x1, y1, x2, y2));
+        chunk.putLong(offset + TIME, time);
+        chunk.putInt(offset + REQUEST, requestId);
+        chunk.putInt(offset + TAXI_ID, taxiId);
+        chunk.putDouble(offset + X1, x1);
+        chunk.putDouble(offset + Y1, y1);
+        chunk.putDouble(offset + X2, x2);
+        chunk.putDouble(offset + Y2, y2);
+        TYPES.setRelease(chunk, offset + TYPE, type);
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        MappedByteBuffer chunk = chunks.get(index);
+        return chunk != null ? chunk : map(index);
+    }
+
+    private synchronized MappedByteBuffer map(int index) {
+        MappedByteBuffer chunk = chunks.get(index);
+        if (chunk == null) {
+            try {
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, (long) index << CHUNK_SHIFT, CHUNK_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunks.set(index, chunk);
+        }
+        return chunk;
+    }
+
+    private void commitLoop() {
+        long lastSnapshotMillis = System.currentTimeMillis();
+        long snapshotPosition = applied;
+        while (true) {
+            boolean stopping = closed;
+            long from = applied;
+            long to = applyPublished(from);
+            if (to > from) {
+                force(from, to);
+                applied = to;
+                durable = to;
+                commits++;
+            }
+
+            long now = System.currentTimeMillis();
+            if (durable > snapshotPosition && now - lastSnapshotMillis >= snapshotIntervalMillis) {
+                writeSnapshot(durable);
+                snapshotPosition = durable;
+                lastSnapshotMillis = now;
+            }
+
+            if (stopping) {
+                return;
+            }
+            if (to == from) {
+                LockSupport.parkNanos(GROUP_COMMIT_NANOS);
+            }
+        }
+    }
+
+    private long applyPublished(long from) {
+        long position = from;
+        long limit = tail.get();
+        while (position < limit) {
+            MappedByteBuffer chunk = chunk((int) (position >>> CHUNK_SHIFT));
+            int offset = (int) (position & (CHUNK_BYTES - 1));
+            int type = (int) TYPES.getAcquire(chunk, offset + TYPE);
+            if (type == 0) {
+                break;
+            }
+            ledger.apply(type, chunk.getLong(offset + TIME), chunk.getInt(offset + REQUEST), chunk.getInt(offset + TAXI_ID),
+                    chunk.getDouble(offset + X1), chunk.getDouble(offset + Y1),
+                    chunk.getDouble(offset + X2), chunk.getDouble(offset + Y2));
+            position += RECORD_BYTES;
+        }
+        return position;
+    }
+
+    private void force(long from, long to) {
+        for (long start = from; start < to; ) {
+            int index = (int) (start >>> CHUNK_SHIFT);
+            int offset = (int) (start & (CHUNK_BYTES - 1));
+            long chunkEnd = ((long) index + 1) << CHUNK_SHIFT;
+            int length = (int) (Math.min(to, chunkEnd) - start);
+            chunk(index).force(offset, length);
+            start += length;
+        }
+    }
+
+    private void writeSnapshot(long position) {
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(position);
+            out.writeInt(ledger.completed);
+            out.writeInt(ledger.highestRequestId);
+            out.writeInt(ledger.taxis.size());
+            for (Map.Entry<Integer, Location> taxi : ledger.taxis.entrySet()) {
+                out.writeInt(taxi.getKey());
+                out.writeDouble(taxi.getValue().getX());
+                out.writeDouble(taxi.getValue().getY());
+            }
+            out.writeInt(ledger.open.size());
+            for (OpenRide ride : ledger.open.values()) {
+                RideRequest request = ride.request;
+                out.writeInt(request.getId());
+                out.writeLong(request.getTimestamp());
+                out.writeDouble(request.getPickupLocation().getX());
+                out.writeDouble(request.getPickupLocation().getY());
+                out.writeDouble(request.getDestination().getX());
+                out.writeDouble(request.getDestination().getY());
+                out.writeInt(ride.taxiId);
+            }
+            out.flush();
+            file.getChannel().force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        snapshots++;
+        EventLog.log(LogEvent.JOURNAL_SNAPSHOT, position / RECORD_BYTES, ledger.taxis.size(), ledger.open.size(),
+                ledger.completed);
+    }
+
+    private static Recovery recover(Path path, Ledger ledger) throws IOException {
+        long position = 0;
+        Path snapshot = snapshotPathOf(path);
+        if (Files.exists(snapshot)) {
+            position = readSnapshot(snapshot, ledger);
+        }
+        long snapshotPosition = position;
+
+        long replayed = 0;
+        if (Files.exists(path)) {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer block = ByteBuffer.allocate(RECORD_BYTES * 4096).order(ByteOrder.LITTLE_ENDIAN);
+                boolean valid = true;
+                while (valid) {
+                    block.clear();
+                    int read = file.read(block, position);
+                    if (read < RECORD_BYTES) {
+                        break;
+                    }
+                    for (int offset = 0; offset + RECORD_BYTES <= read; offset += RECORD_BYTES) {
+                        int type = block.getInt(offset + TYPE);
+                        long time = block.getLong(offset + TIME);
+                        int requestId = block.getInt(offset + REQUEST);
+                        int taxiId = block.getInt(offset + TAXI_ID);
+                        double x1 = block.getDouble(offset + X1);
+                        double y1 = block.getDouble(offset + Y1);
+                        double x2 = block.getDouble(offset + X2);
+                        double y2 = block.getDouble(offset + Y2);
+                        if (type < TAXI || type > COMPLETED
+                                || block.getInt(offset + CHECKSUM) != checksum(type, time, requestId, taxiId, x1, y1, x2, y2)) {
+                            valid = false;
+                            break;
+                        }
+                        ledger.apply(type, time, requestId, taxiId, x1, y1, x2, y2);
+                        position += RECORD_BYTES;
+                        replayed++;
+                    }
+                }
+            }
+        }
+        return new Recovery(ledger, snapshotPosition, replayed, position);
+    }
+
+    private static long readSnapshot(Path snapshot, Ledger ledger) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a ride journal snapshot: " + snapshot);
+            }
+            long position = in.readLong();
+            ledger.completed = in.readInt();
+            ledger.highestRequestId = in.readInt();
+            int taxis = in.readInt();
+            for (int i = 0; i < taxis; i++) {
+                ledger.taxis.put(in.readInt(), new Location(in.readDouble(), in.readDouble()));
+            }
+            int open = in.readInt();
+            for (int i = 0; i < open; i++) {
+                int id = in.readInt();
+                long timestamp = in.readLong();
+                Location pickup = new Location(in.readDouble(), in.readDouble());
+                Location destination = new Location(in.readDouble(), in.readDouble());
+                OpenRide ride = new OpenRide(new RideRequest(id, pickup, destination, timestamp));
+                ride.taxiId = in.readInt();
+                ledger.open.put(id, ride);
+            }
+            return position;
+        }
+    }
+
+    private static Path snapshotPathOf(Path path) {
+        return path.resolveSibling(path.getFileName() + ".snapshot");
+    }
+
+    private static int checksum(int type, long time, int requestId, int taxiId, double x1, double y1, double x2, double y2) {
+        long hash = type;
+        hash = hash * 0x9E3779B97F4A7C15L + time;
+        hash = hash * 0x9E3779B97F4A7C15L + requestId;
+        hash = hash * 0x9E3779B97F4A7C15L + taxiId;
+        hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToRawLongBits(x1);
+        hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToRawLongBits(y1);
+        hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToRawLongBits(x2);
+        hash = hash * 0x9E3779B97F4A7C15L + Double.doubleToRawLongBits(y2);
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,9 @@
+interface RideListener {
+    void onSubmitted(RideRequest request);
+
+    void onAssigned(RideRequest request, Taxi taxi, long timeMillis, double pickupDistance);
+
+    void onCompleted(RideRequest request, Taxi taxi, long timeMillis);
+
+    void onShed(RideRequest request);
+}
@@ -0,0 +1,39 @@
+class RideOutcome {
+    private final RideRequest request;
+    private final int taxiId;
+    private final long requestedAt;
+    private final long assignedAt;
+    private final long completedAt;
+    private final double pickupDistance;
+
+    RideOutcome(RideRequest request, int taxiId, long assignedAt, long completedAt, double pickupDistance) {
+        this.request = request;
+        this.taxiId = taxiId;
+        this.requestedAt = request.getTimestamp();
+        this.assignedAt = assignedAt;
+        this.completedAt = completedAt;
+        this.pickupDistance = pickupDistance;
+    }
+
+    public RideRequest getRequest() { return request; }
+    public int getTaxiId() { return taxiId; }
+    public long getRequestedAt() { return requestedAt; }
+    public long getAssignedAt() { return assignedAt; }
+    public long getCompletedAt() { return completedAt; }
+    public double getPickupDistance() { return pickupDistance; }
+    public double getRideDistance() { return request.getRideDistance(); }
+
+    public long getWaitMillis() {
+        return assignedAt - requestedAt;
+    }
+
+    public long getTotalMillis() {
+        return completedAt - requestedAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d by Taxi-%d: waited %d ms, pickup %.2f, ride %.2f, done after %d ms",
+                request.getId(), taxiId, getWaitMillis(), pickupDistance, getRideDistance(), getTotalMillis());
+    }
+}
@@ -8,10 +8,22 @@ class RideRequest {
     private final long timestamp;
 
     public RideRequest(Location pickupLocation, Location destination) {
-        this.id = idCounter.getAndIncrement();
+        this(pickupLocation, destination, System.currentTimeMillis());
+    }
+
+    public RideRequest(Location pickupLocation, Location destination, long timestamp) {
+        this(idCounter.getAndIncrement(), pickupLocation, destination, timestamp);
+    }
+
+    RideRequest(int id, Location pickupLocation, Location destination, long timestamp) {
+        this.id = id;
         this.pickupLocation = pickupLocation;
         this.destination = destination;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
+    }
+
+    static void reserveIdsThrough(int id) {
+        idCounter.accumulateAndGet(id + 1, Math::max);
     }
 
     public int getId() { return id; }
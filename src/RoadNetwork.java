@@ -0,0 +1,488 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+class RoadNetwork implements TravelModel {
+    static final double LOCAL_SPEED = 1.0;
+    static final double ARTERIAL_SPEED = 2.0;
+    private static final double MAP_SIZE = 100.0;
+
+    private static final class Leg {
+        private final double seconds;
+        private final double distance;
+
+        private Leg(double seconds, double distance) {
+            this.seconds = seconds;
+            this.distance = distance;
+        }
+    }
+
+    private static final class Search {
+        private final double[] seconds;
+        private final int[] hops;
+        private final int[] visited;
+        private final int[] wanted;
+        private int generation;
+        private int[] heapNodes;
+        private double[] heapKeys;
+        private int heapSize;
+
+        private Search(int nodes) {
+            this.seconds = new double[nodes];
+            this.hops = new int[nodes];
+            this.visited = new int[nodes];
+            this.wanted = new int[nodes];
+            this.heapNodes = new int[nodes];
+            this.heapKeys = new double[nodes];
+        }
+
+        private void reset() {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                Arrays.fill(wanted, 0);
+                generation = 1;
+            }
+            heapSize = 0;
+        }
+
+        private boolean improve(int node, double cost, int pathHops) {
+            if (visited[node] == generation && seconds[node] <= cost) {
+                return false;
+            }
+            visited[node] = generation;
+            seconds[node] = cost;
+            hops[node] = pathHops;
+            return true;
+        }
+
+        private void push(int node, double key) {
+            if (heapSize == heapNodes.length) {
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            }
+            int index = heapSize++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heapKeys[parent] <= key) {
+                    break;
+                }
+                heapNodes[index] = heapNodes[parent];
+                heapKeys[index] = heapKeys[parent];
+                index = parent;
+            }
+            heapNodes[index] = node;
+            heapKeys[index] = key;
+        }
+
+        private int pop() {
+            int top = heapNodes[0];
+            int lastNode = heapNodes[--heapSize];
+            double lastKey = heapKeys[heapSize];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                    child++;
+                }
+                if (heapKeys[child] >= lastKey) {
+                    break;
+                }
+                heapNodes[index] = heapNodes[child];
+                heapKeys[index] = heapKeys[child];
+                index = child;
+            }
+            heapNodes[index] = lastNode;
+            heapKeys[index] = lastKey;
+            return top;
+        }
+
+        private double peekKey() {
+            return heapKeys[0];
+        }
+    }
+
+    private final int side;
+    private final double spacing;
+    private final double[] eastSeconds;
+    private final double[] northSeconds;
+    private final int cacheCapacity;
+    private final Map<Long, Leg> cache;
+    private final ReentrantLock cacheLock;
+    private final AtomicLong cacheHits;
+    private final AtomicLong cacheMisses;
+    private final ThreadLocal<Search> searches;
+    private final int blockedStreets;
+
+    public RoadNetwork(double mapSize, int blocksPerSide, int arterialEvery, double blockedShare, long seed,
+                       int cacheCapacity) {
+        this.side = blocksPerSide + 1;
+        this.spacing = mapSize / blocksPerSide;
+        int nodes = side * side;
+        this.eastSeconds = new double[nodes];
+        this.northSeconds = new double[nodes];
+        this.cacheCapacity = cacheCapacity;
+        this.cache = new LinkedHashMap<>(Math.min(cacheCapacity, 1 << 16), 0.75f, true);
+        this.cacheLock = new ReentrantLock();
+        this.cacheHits = new AtomicLong();
+        this.cacheMisses = new AtomicLong();
+        this.searches = ThreadLocal.withInitial(() -> new Search(nodes));
+
+        SplittableRandom random = new SplittableRandom(seed);
+        int blocked = 0;
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                int node = y * side + x;
+                eastSeconds[node] = x + 1 < side
+                        ? streetSeconds(y % arterialEvery == 0, blockedShare, random)
+                        : Double.POSITIVE_INFINITY;
+                northSeconds[node] = y + 1 < side
+                        ? streetSeconds(x % arterialEvery == 0, blockedShare, random)
+                        : Double.POSITIVE_INFINITY;
+                if (x + 1 < side && eastSeconds[node] == Double.POSITIVE_INFINITY) {
+                    blocked++;
+                }
+                if (y + 1 < side && northSeconds[node] == Double.POSITIVE_INFINITY) {
+                    blocked++;
+                }
+            }
+        }
+        this.blockedStreets = blocked - reconnect();
+    }
+
+    static RoadNetwork fromConfig(SimulationConfig config, long seed) {
+        return new RoadNetwork(MAP_SIZE, config.getRoadBlocks(), config.getArterialEvery(), config.getBlockedShare(),
+                seed, config.getRouteCacheSize());
+    }
+
+    public int getNodeCount() {
+        return side * side;
+    }
+
+    public int getBlockedStreets() {
+        return blockedStreets;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public int getCachedLegs() {
+        cacheLock.lock();
+        try {
+            return cache.size();
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    @Override
+    public double distance(Location from, Location to) {
+        int source = nodeOf(from);
+        int target = nodeOf(to);
+        if (source == target) {
+            return from.distanceTo(to);
+        }
+        return access(from, source) + leg(source, target).distance + access(to, target);
+    }
+
+    @Override
+    public double travelSeconds(Location from, Location to) {
+        int source = nodeOf(from);
+        int target = nodeOf(to);
+        if (source == target) {
+            return from.distanceTo(to) / LOCAL_SPEED;
+        }
+        return (access(from, source) + access(to, target)) / LOCAL_SPEED + leg(source, target).seconds;
+    }
+
+    @Override
+    public double[] travelSeconds(List<Location> origins, Location target) {
+        return secondsTo(origins, target, false);
+    }
+
+    @Override
+    public int fastest(List<Location> origins, Location target) {
+        double[] seconds = secondsTo(origins, target, true);
+        int best = -1;
+        double bestSeconds = Double.MAX_VALUE;
+        for (int i = 0; i < seconds.length; i++) {
+            if (seconds[i] < bestSeconds) {
+                bestSeconds = seconds[i];
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private double[] secondsTo(List<Location> origins, Location target, boolean onlyFastest) {
+        int targetNode = nodeOf(target);
+        double targetAccess = access(target, targetNode) / LOCAL_SPEED;
+        int count = origins.size();
+        double[] known = new double[count];
+        int missing = 0;
+
+        for (int i = 0; i < count; i++) {
+            Location origin = origins.get(i);
+            int node = nodeOf(origin);
+            if (node == targetNode) {
+                known[i] = origin.distanceTo(target) / LOCAL_SPEED;
+                continue;
+            }
+            Leg cached = cached(node, targetNode);
+            if (cached == null) {
+                known[i] = Double.NaN;
+                missing++;
+            } else {
+                known[i] = access(origin, node) / LOCAL_SPEED + cached.seconds + targetAccess;
+            }
+        }
+
+        if (missing > 0) {
+            double bound = Double.MAX_VALUE;
+            if (onlyFastest) {
+                for (double seconds : known) {
+                    if (!Double.isNaN(seconds)) {
+                        bound = Math.min(bound, seconds - targetAccess);
+                    }
+                }
+            }
+            searchFrom(targetNode, origins, known, bound, targetAccess);
+        }
+        return known;
+    }
+
+    private void searchFrom(int targetNode, List<Location> origins, double[] known, double bound, double targetAccess) {
+        Search search = searches.get();
+        search.reset();
+        int remaining = 0;
+        for (int i = 0; i < known.length; i++) {
+            if (Double.isNaN(known[i])) {
+                int node = nodeOf(origins.get(i));
+                if (search.wanted[node] != search.generation) {
+                    search.wanted[node] = search.generation;
+                    remaining++;
+                }
+            }
+        }
+
+        search.improve(targetNode, 0, 0);
+        search.push(targetNode, 0);
+        while (search.heapSize > 0 && remaining > 0) {
+            double key = search.peekKey();
+            int node = search.pop();
+            if (key > search.seconds[node]) {
+                continue;
+            }
+            if (key > bound) {
+                break;
+            }
+            if (search.wanted[node] == search.generation) {
+                search.wanted[node] = 0;
+                remaining--;
+                store(node, targetNode, new Leg(key, search.hops[node] * spacing));
+            }
+            relax(search, node, -1);
+        }
+
+        for (int i = 0; i < known.length; i++) {
+            if (!Double.isNaN(known[i])) {
+                continue;
+            }
+            Location origin = origins.get(i);
+            int node = nodeOf(origin);
+            known[i] = search.wanted[node] == search.generation
+                    ? Double.MAX_VALUE
+                    : access(origin, node) / LOCAL_SPEED + search.seconds[node] + targetAccess;
+        }
+    }
+
+    private Leg leg(int source, int target) {
+        Leg cached = cached(source, target);
+        if (cached != null) {
+            return cached;
+        }
+        Leg leg = aStar(source, target);
+        store(source, target, leg);
+        return leg;
+    }
+
+    private Leg aStar(int source, int target) {
+        Search search = searches.get();
+        search.reset();
+        search.improve(source, 0, 0);
+        search.push(source, heuristic(source, target));
+
+        while (search.heapSize > 0) {
+            double key = search.peekKey();
+            int node = search.pop();
+            if (key > search.seconds[node] + heuristic(node, target) + 1e-9) {
+                continue;
+            }
+            if (node == target) {
+                return new Leg(search.seconds[node], search.hops[node] * spacing);
+            }
+            relax(search, node, target);
+        }
+        return new Leg(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    private void relax(Search search, int node, int target) {
+        int x = node % side;
+        double base = search.seconds[node];
+        int pathHops = search.hops[node] + 1;
+        if (x + 1 < side) {
+            offer(search, node + 1, base + eastSeconds[node], pathHops, target);
+        }
+        if (x > 0) {
+            offer(search, node - 1, base + eastSeconds[node - 1], pathHops, target);
+        }
+        if (node + side < eastSeconds.length) {
+            offer(search, node + side, base + northSeconds[node], pathHops, target);
+        }
+        if (node >= side) {
+            offer(search, node - side, base + northSeconds[node - side], pathHops, target);
+        }
+    }
+
+    private void offer(Search search, int next, double cost, int pathHops, int target) {
+        if (cost != Double.POSITIVE_INFINITY && search.improve(next, cost, pathHops)) {
+            search.push(next, target < 0 ? cost : cost + heuristic(next, target));
+        }
+    }
+
+    private double heuristic(int node, int target) {
+        double dx = (node % side - target % side) * spacing;
+        double dy = (node / side - target / side) * spacing;
+        return Math.sqrt(dx * dx + dy * dy) / ARTERIAL_SPEED;
+    }
+
+    private Leg cached(int a, int b) {
+        if (cacheCapacity <= 0) {
+            return null;
+        }
+        Leg leg;
+        cacheLock.lock();
+        try {
+            leg = cache.get(key(a, b));
+        } finally {
+            cacheLock.unlock();
+        }
+        if (leg == null) {
+            cacheMisses.incrementAndGet();
+        } else {
+            cacheHits.incrementAndGet();
+        }
+        return leg;
+    }
+
+    private void store(int a, int b, Leg leg) {
+        if (cacheCapacity <= 0) {
+            return;
+        }
+        cacheLock.lock();
+        try {
+            cache.put(key(a, b), leg);
+            if (cache.size() > cacheCapacity) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private long key(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    private int nodeOf(Location location) {
+        int x = clamp((int) Math.round(location.getX() / spacing));
+        int y = clamp((int) Math.round(location.getY() / spacing));
+        return y * side + x;
+    }
+
+    private double access(Location location, int node) {
+        double dx = location.getX() - (node % side) * spacing;
+        double dy = location.getY() - (node / side) * spacing;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private int clamp(int coord) {
+        return Math.max(0, Math.min(side - 1, coord));
+    }
+
+    private double streetSeconds(boolean arterial, double blockedShare, SplittableRandom random) {
+        if (arterial) {
+            return spacing / ARTERIAL_SPEED;
+        }
+        return random.nextDouble() < blockedShare ? Double.POSITIVE_INFINITY : spacing / LOCAL_SPEED;
+    }
+
+    private int reconnect() {
+        int reopened = 0;
+        boolean[] reached = new boolean[side * side];
+        ArrayDeque<Integer> frontier = new ArrayDeque<>();
+        reached[0] = true;
+        frontier.add(0);
+        while (true) {
+            while (!frontier.isEmpty()) {
+                int node = frontier.poll();
+                int x = node % side;
+                visit(reached, frontier, x + 1 < side && eastSeconds[node] != Double.POSITIVE_INFINITY, node + 1);
+                visit(reached, frontier, x > 0 && eastSeconds[node - 1] != Double.POSITIVE_INFINITY, node - 1);
+                visit(reached, frontier, node + side < reached.length && northSeconds[node] != Double.POSITIVE_INFINITY, node + side);
+                visit(reached, frontier, node >= side && northSeconds[node - side] != Double.POSITIVE_INFINITY, node - side);
+            }
+
+            int isolated = -1;
+            for (int node = 0; node < reached.length && isolated < 0; node++) {
+                if (!reached[node]) {
+                    isolated = node;
+                }
+            }
+            if (isolated < 0) {
+                return reopened;
+            }
+
+            int x = isolated % side;
+            if (x > 0) {
+                eastSeconds[isolated - 1] = spacing / LOCAL_SPEED;
+                reopened++;
+                if (reached[isolated - 1]) {
+                    reached[isolated] = true;
+                    frontier.add(isolated);
+                    continue;
+                }
+            }
+            if (isolated >= side) {
+                northSeconds[isolated - side] = spacing / LOCAL_SPEED;
+                reopened++;
+                if (reached[isolated - side]) {
+                    reached[isolated] = true;
+                    frontier.add(isolated);
+                    continue;
+                }
+            }
+            reached[isolated] = true;
+            frontier.add(isolated);
+        }
+    }
+
+    private void visit(boolean[] reached, ArrayDeque<Integer> frontier, boolean open, int next) {
+        if (open && !reached[next]) {
+            reached[next] = true;
+            frontier.add(next);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+import java.util.Arrays;
+
+final class Route {
+    static final class Stop {
+        private final RideRequest request;
+        private final boolean pickup;
+        private final double maxRideDistance;
+        private final double latestOdometer;
+        private final long assignedAtMillis;
+
+        private Stop(RideRequest request, boolean pickup, double maxRideDistance, double latestOdometer,
+                     long assignedAtMillis) {
+            this.request = request;
+            this.pickup = pickup;
+            this.maxRideDistance = maxRideDistance;
+            this.latestOdometer = latestOdometer;
+            this.assignedAtMillis = assignedAtMillis;
+        }
+
+        public RideRequest getRequest() { return request; }
+        public boolean isPickup() { return pickup; }
+        public long getAssignedAtMillis() { return assignedAtMillis; }
+
+        public Location getLocation() {
+            return pickup ? request.getPickupLocation() : request.getDestination();
+        }
+
+        private boolean isOnboard() {
+            return !Double.isNaN(latestOdometer);
+        }
+    }
+
+    static final class Insertion {
+        private final int pickupGap;
+        private final int dropoffGap;
+        private final double addedDistance;
+        private final double pickupDistance;
+        private final double pickupSeconds;
+
+        private Insertion(int pickupGap, int dropoffGap, double addedDistance, double pickupDistance,
+                          double pickupSeconds) {
+            this.pickupGap = pickupGap;
+            this.dropoffGap = dropoffGap;
+            this.addedDistance = addedDistance;
+            this.pickupDistance = pickupDistance;
+            this.pickupSeconds = pickupSeconds;
+        }
+
+        public double getAddedDistance() { return addedDistance; }
+        public double getPickupDistance() { return pickupDistance; }
+        public long getPickupMillis() { return (long) (pickupSeconds * 1000); }
+
+        public double cost() {
+            return addedDistance + pickupDistance;
+        }
+    }
+
+    private final TravelModel travel;
+    private final Location origin;
+    private final double originOdometer;
+    private final Stop[] stops;
+    private final boolean headLocked;
+    private final double[] odometerAt;
+    private final double[] secondsAt;
+    private final int[] load;
+    private final double[] slack;
+
+    private Route(TravelModel travel, Location origin, double originOdometer, Stop[] stops, boolean headLocked) {
+        this.travel = travel;
+        this.origin = origin;
+        this.originOdometer = originOdometer;
+        this.stops = stops;
+        this.headLocked = headLocked;
+
+        int n = stops.length;
+        this.odometerAt = new double[n];
+        this.secondsAt = new double[n];
+        this.load = new int[n + 1];
+        this.slack = new double[n + 1];
+        Arrays.fill(slack, Double.MAX_VALUE);
+
+        Location previous = origin;
+        double odometer = originOdometer;
+        double seconds = 0;
+        int onboard = 0;
+        for (Stop stop : stops) {
+            if (!stop.pickup && stop.isOnboard()) {
+                onboard++;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            odometer += travel.distance(previous, stops[k].getLocation());
+            odometerAt[k] = odometer;
+            seconds += travel.travelSeconds(previous, stops[k].getLocation());
+            secondsAt[k] = seconds;
+            load[k] = onboard;
+            onboard += stops[k].pickup ? 1 : -1;
+            previous = stops[k].getLocation();
+        }
+        load[n] = onboard;
+
+        for (int b = 0; b < n; b++) {
+            Stop dropoff = stops[b];
+            if (dropoff.pickup) {
+                continue;
+            }
+            int firstLeg;
+            double riderSlack;
+            if (dropoff.isOnboard()) {
+                firstLeg = 0;
+                riderSlack = dropoff.latestOdometer - odometerAt[b];
+            } else {
+                int a = pickupIndex(dropoff.request, b);
+                firstLeg = a + 1;
+                riderSlack = odometerAt[a] + dropoff.maxRideDistance - odometerAt[b];
+            }
+            for (int k = firstLeg; k <= b; k++) {
+                slack[k] = Math.min(slack[k], riderSlack);
+            }
+        }
+    }
+
+    static Route start(TravelModel travel, Location origin, RideRequest request, double maxDetour, long nowMillis) {
+        double maxRide = rideDistance(travel, request) * (1 + maxDetour);
+        Stop[] stops = {
+                new Stop(request, true, maxRide, Double.NaN, nowMillis),
+                new Stop(request, false, maxRide, Double.NaN, nowMillis)
+        };
+        return new Route(travel, origin, 0, stops, false);
+    }
+
+    public boolean isEmpty() {
+        return stops.length == 0;
+    }
+
+    public int size() {
+        return stops.length;
+    }
+
+    public Stop head() {
+        return stops[0];
+    }
+
+    public Location getOrigin() {
+        return origin;
+    }
+
+    public int getOnboard() {
+        return load[0];
+    }
+
+    Route lockHead() {
+        return new Route(travel, origin, originOdometer, stops, true);
+    }
+
+    Route advance() {
+        Stop reached = stops[0];
+        Stop[] remaining = Arrays.copyOfRange(stops, 1, stops.length);
+        if (reached.pickup) {
+            for (int i = 0; i < remaining.length; i++) {
+                Stop stop = remaining[i];
+                if (!stop.pickup && stop.request == reached.request) {
+                    remaining[i] = new Stop(stop.request, false, stop.maxRideDistance,
+                            odometerAt[0] + stop.maxRideDistance, stop.assignedAtMillis);
+                    break;
+                }
+            }
+        }
+        return new Route(travel, reached.getLocation(), odometerAt[0], remaining, false);
+    }
+
+    Insertion findInsertion(RideRequest request, int capacity, double maxDetour, long maxPickupMillis,
+                            long nowMillis) {
+        Location pickup = request.getPickupLocation();
+        Location destination = request.getDestination();
+        double direct = rideDistance(travel, request);
+        double directSeconds = travel.travelSeconds(pickup, destination);
+        double maxRide = direct * (1 + maxDetour);
+        double maxPickupSeconds = maxPickupMillis > 0 ? maxPickupMillis / 1000.0 : Double.MAX_VALUE;
+        double[] pickupSlack = pickupSlack(maxPickupMillis, nowMillis);
+        int n = stops.length;
+
+        int bestPickupGap = -1;
+        int bestDropoffGap = -1;
+        double bestAdded = 0;
+        double bestPickupDistance = 0;
+        double bestPickupSeconds = 0;
+        double bestCost = Double.MAX_VALUE;
+
+        for (int i = headLocked ? 1 : 0; i <= n; i++) {
+            if (i > 0 && secondsAt[i - 1] > maxPickupSeconds) {
+                break;
+            }
+            if (load[i] >= capacity) {
+                continue;
+            }
+            Location before = i == 0 ? origin : stops[i - 1].getLocation();
+            double toPickupSeconds = travel.travelSeconds(before, pickup);
+            double pickupSeconds = (i == 0 ? 0 : secondsAt[i - 1]) + toPickupSeconds;
+            if (pickupSeconds > maxPickupSeconds) {
+                continue;
+            }
+            double toPickup = travel.distance(before, pickup);
+            double pickupDistance = (i == 0 ? 0 : odometerAt[i - 1] - originOdometer) + toPickup;
+
+            double together = toPickup + direct;
+            double togetherSeconds = toPickupSeconds + directSeconds;
+            if (i < n) {
+                Location after = stops[i].getLocation();
+                together += travel.distance(destination, after) - travel.distance(before, after);
+                togetherSeconds += travel.travelSeconds(destination, after) - travel.travelSeconds(before, after);
+            }
+            if ((i == n || (together <= slack[i] && togetherSeconds <= pickupSlack[i]))
+                    && together + pickupDistance < bestCost) {
+                bestCost = together + pickupDistance;
+                bestPickupGap = i;
+                bestDropoffGap = i;
+                bestAdded = together;
+                bestPickupDistance = pickupDistance;
+                bestPickupSeconds = pickupSeconds;
+            }
+            if (i == n) {
+                continue;
+            }
+
+            Location after = stops[i].getLocation();
+            double pickupDetour = toPickup + travel.distance(pickup, after) - travel.distance(before, after);
+            double pickupDetourSeconds = toPickupSeconds + travel.travelSeconds(pickup, after)
+                    - travel.travelSeconds(before, after);
+            if (pickupDetour > slack[i] || pickupDetourSeconds > pickupSlack[i]) {
+                continue;
+            }
+            for (int j = i + 1; j <= n; j++) {
+                if (load[j] >= capacity) {
+                    break;
+                }
+                Location previous = stops[j - 1].getLocation();
+                double ride = travel.distance(pickup, after) + odometerAt[j - 1] - odometerAt[i] + travel.distance(previous, destination);
+                if (ride > maxRide) {
+                    break;
+                }
+                double dropoffDetour = travel.distance(previous, destination);
+                double dropoffDetourSeconds = travel.travelSeconds(previous, destination);
+                if (j < n) {
+                    Location next = stops[j].getLocation();
+                    dropoffDetour += travel.distance(destination, next) - travel.distance(previous, next);
+                    dropoffDetourSeconds += travel.travelSeconds(destination, next) - travel.travelSeconds(previous, next);
+                }
+                double added = pickupDetour + dropoffDetour;
+                boolean fits = j == n
+                        || (added <= slack[j] && pickupDetourSeconds + dropoffDetourSeconds <= pickupSlack[j]);
+                if (fits && added + pickupDistance < bestCost) {
+                    bestCost = added + pickupDistance;
+                    bestPickupGap = i;
+                    bestDropoffGap = j;
+                    bestAdded = added;
+                    bestPickupDistance = pickupDistance;
+                    bestPickupSeconds = pickupSeconds;
+                }
+            }
+        }
+
+        return bestPickupGap < 0 ? null : new Insertion(bestPickupGap, bestDropoffGap, bestAdded, bestPickupDistance,
+                bestPickupSeconds);
+    }
+
+    Route insert(RideRequest request, Insertion insertion, double maxDetour, long nowMillis) {
+        double maxRide = rideDistance(travel, request) * (1 + maxDetour);
+        int i = insertion.pickupGap;
+        int j = insertion.dropoffGap;
+        Stop[] updated = new Stop[stops.length + 2];
+        System.arraycopy(stops, 0, updated, 0, i);
+        updated[i] = new Stop(request, true, maxRide, Double.NaN, nowMillis);
+        System.arraycopy(stops, i, updated, i + 1, j - i);
+        updated[j + 1] = new Stop(request, false, maxRide, Double.NaN, nowMillis);
+        System.arraycopy(stops, j, updated, j + 2, stops.length - j);
+        return new Route(travel, origin, originOdometer, updated, headLocked);
+    }
+
+    private double[] pickupSlack(long maxPickupMillis, long nowMillis) {
+        int n = stops.length;
+        double[] pickupSlack = new double[n + 1];
+        pickupSlack[n] = Double.MAX_VALUE;
+        for (int k = n - 1; k >= 0; k--) {
+            double own = Double.MAX_VALUE;
+            if (stops[k].pickup && maxPickupMillis > 0) {
+                own = (stops[k].assignedAtMillis + maxPickupMillis - nowMillis) / 1000.0 - secondsAt[k];
+            }
+            pickupSlack[k] = Math.min(own, pickupSlack[k + 1]);
+        }
+        return pickupSlack;
+    }
+
+    static double rideDistance(TravelModel travel, RideRequest request) {
+        return travel.distance(request.getPickupLocation(), request.getDestination());
+    }
+
+    private int pickupIndex(RideRequest request, int dropoffIndex) {
+        for (int a = dropoffIndex - 1; a >= 0; a--) {
+            if (stops[a].pickup && stops[a].request == request) {
+                return a;
+            }
+        }
+        throw new IllegalStateException("Drop-off without pickup for order #" + request.getId());
+    }
+}
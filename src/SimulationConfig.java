@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+class SimulationConfig {
+    static final String ORDERS = "orders";
+    static final String TAXIS = "taxis";
+    static final String MIN_DISTANCE = "minDistance";
+    static final String SEED = "seed";
+    static final String SIMULATE = "simulate";
+    static final String SCHEDULER = "scheduler";
+    static final String BATCH = "batch";
+    static final String ZONES = "zones";
+    static final String ETA = "eta";
+    static final String POOL = "pool";
+    static final String POOL_CAPACITY = "poolCapacity";
+    static final String MAX_DETOUR = "maxDetour";
+    static final String MAX_PICKUP_WAIT_MILLIS = "maxPickupWaitMillis";
+    static final String REBALANCE = "rebalance";
+    static final String REBALANCE_INTERVAL_MILLIS = "rebalanceIntervalMillis";
+    static final String DEMAND_HALF_LIFE_MILLIS = "demandHalfLifeMillis";
+    static final String ROADS = "roads";
+    static final String ROAD_BLOCKS = "roadBlocks";
+    static final String ARTERIAL_EVERY = "arterialEvery";
+    static final String BLOCKED_SHARE = "blockedShare";
+    static final String ROUTE_CACHE_SIZE = "routeCacheSize";
+    static final String JOURNAL = "journal";
+    static final String SNAPSHOT_INTERVAL_MILLIS = "snapshotIntervalMillis";
+    static final String INTAKE_CAPACITY = "intakeCapacity";
+    static final String ORDER_TTL_MILLIS = "orderTtlMillis";
+    static final String STATUS_PORT = "statusPort";
+    static final String HISTORY = "history";
+    static final String QUIET = "quiet";
+    static final String TRACE = "trace";
+    static final String RECORD = "record";
+    static final String SPEED = "speed";
+    static final String START_DELAY_MILLIS = "startDelayMillis";
+
+    private static final String CONFIG = "config";
+    private static final long INTERACTIVE_START_DELAY_MILLIS = 3000;
+    private static final int DEFAULT_POOL_CAPACITY = 4;
+    private static final double DEFAULT_MAX_DETOUR = 0.5;
+    private static final long DEFAULT_MAX_PICKUP_WAIT_MILLIS = 120_000;
+    private static final long DEFAULT_REBALANCE_INTERVAL_MILLIS = 30_000;
+    private static final long DEFAULT_DEMAND_HALF_LIFE_MILLIS = 300_000;
+    private static final int DEFAULT_ROAD_BLOCKS = 50;
+    private static final int DEFAULT_ARTERIAL_EVERY = 5;
+    private static final double DEFAULT_BLOCKED_SHARE = 0.15;
+    private static final int DEFAULT_ROUTE_CACHE_SIZE = 65_536;
+
+    private final Properties properties;
+
+    private SimulationConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    static SimulationConfig fromArgs(String[] args) throws IOException {
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unrecognised argument: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String key = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? "true" : arg.substring(separator + 1);
+            overrides.setProperty(canonicalKey(key), value);
+        }
+
+        Properties properties = new Properties();
+        String file = overrides.getProperty(CONFIG);
+        if (file != null) {
+            Properties loaded = new Properties();
+            try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                loaded.load(reader);
+            }
+            for (String key : loaded.stringPropertyNames()) {
+                properties.setProperty(canonicalKey(key), loaded.getProperty(key));
+            }
+        }
+        properties.putAll(overrides);
+        return new SimulationConfig(properties);
+    }
+
+    SimulationConfig with(String key, Object value) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        copy.setProperty(key, String.valueOf(value));
+        return new SimulationConfig(copy);
+    }
+
+    boolean isHeadless() {
+        return has(TAXIS) && has(MIN_DISTANCE) && (has(ORDERS) || has(TRACE));
+    }
+
+    boolean has(String key) {
+        return properties.getProperty(key) != null;
+    }
+
+    String getString(String key) {
+        return properties.getProperty(key);
+    }
+
+    int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    double getDouble(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    boolean getBoolean(String key) {
+        return Boolean.parseBoolean(properties.getProperty(key, "false").trim());
+    }
+
+    int[] getIntList(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return new int[] {defaultValue};
+        }
+        String[] parts = value.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    double[] getDoubleList(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return new double[] {defaultValue};
+        }
+        String[] parts = value.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+
+    int getOrders() { return getInt(ORDERS, 0); }
+    int getTaxis() { return getInt(TAXIS, 0); }
+    double getMinDistance() { return getDouble(MIN_DISTANCE, 0); }
+    boolean isSimulate() { return getBoolean(SIMULATE); }
+    boolean isScheduler() { return getBoolean(SCHEDULER); }
+    boolean isBatch() { return getBoolean(BATCH); }
+    boolean isZones() { return getBoolean(ZONES); }
+    boolean isEta() { return getBoolean(ETA); }
+    boolean isPool() { return getBoolean(POOL); }
+    int getPoolCapacity() { return getInt(POOL_CAPACITY, DEFAULT_POOL_CAPACITY); }
+    double getMaxDetour() { return getDouble(MAX_DETOUR, DEFAULT_MAX_DETOUR); }
+    long getMaxPickupWaitMillis() { return getLong(MAX_PICKUP_WAIT_MILLIS, DEFAULT_MAX_PICKUP_WAIT_MILLIS); }
+    boolean isRebalance() { return getBoolean(REBALANCE); }
+    long getRebalanceIntervalMillis() { return getLong(REBALANCE_INTERVAL_MILLIS, DEFAULT_REBALANCE_INTERVAL_MILLIS); }
+    long getDemandHalfLifeMillis() { return getLong(DEMAND_HALF_LIFE_MILLIS, DEFAULT_DEMAND_HALF_LIFE_MILLIS); }
+    boolean isRoads() { return getBoolean(ROADS); }
+    int getRoadBlocks() { return getInt(ROAD_BLOCKS, DEFAULT_ROAD_BLOCKS); }
+    int getArterialEvery() { return getInt(ARTERIAL_EVERY, DEFAULT_ARTERIAL_EVERY); }
+    double getBlockedShare() { return getDouble(BLOCKED_SHARE, DEFAULT_BLOCKED_SHARE); }
+    int getRouteCacheSize() { return getInt(ROUTE_CACHE_SIZE, DEFAULT_ROUTE_CACHE_SIZE); }
+    String getJournal() { return getString(JOURNAL); }
+    long getSnapshotIntervalMillis() { return getLong(SNAPSHOT_INTERVAL_MILLIS, RideJournal.DEFAULT_SNAPSHOT_INTERVAL_MILLIS); }
+    int getIntakeCapacity() { return getInt(INTAKE_CAPACITY, RideIntake.DEFAULT_CAPACITY); }
+    long getOrderTtlMillis() { return getLong(ORDER_TTL_MILLIS, RideIntake.DEFAULT_TTL_MILLIS); }
+    int getStatusPort() { return getInt(STATUS_PORT, -1); }
+    boolean isHistory() { return getBoolean(HISTORY); }
+    boolean isQuiet() { return getBoolean(QUIET); }
+    String getTrace() { return getString(TRACE); }
+    String getRecord() { return getString(RECORD); }
+    double getSpeed() { return getDouble(SPEED, 1.0); }
+
+    long getSeed() {
+        return has(SEED) ? getLong(SEED, 0) : System.nanoTime();
+    }
+
+    long getStartDelayMillis() {
+        return getLong(START_DELAY_MILLIS, isHeadless() ? 0 : INTERACTIVE_START_DELAY_MILLIS);
+    }
+
+    private static String canonicalKey(String key) {
+        StringBuilder canonical = new StringBuilder(key.length());
+        boolean upper = false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '-') {
+                upper = true;
+            } else {
+                canonical.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return canonical.toString();
+    }
+}
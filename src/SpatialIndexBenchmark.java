@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SpatialIndexBenchmark {
+    private static final int[] FLEET_SIZES = {50, 500, 5_000, 50_000, 100_000};
+    private static final int QUERIES = 20_000;
+    private static final int WARMUP_ROUNDS = 3;
+    private static volatile long blackhole;
+
+    public static void main(String[] args) {
+        System.out.println("SPATIAL INDEX BENCHMARK\n");
+        System.out.printf("%-10s %15s %15s %10s\n", "Taxis", "Linear (ns/op)", "Grid (ns/op)", "Speedup");
+
+        for (int fleetSize : FLEET_SIZES) {
+            Random random = new Random(42);
+            List<Taxi> taxis = new ArrayList<>(fleetSize);
+            TaxiGrid grid = new TaxiGrid(100.0, 64);
+
+            for (int i = 1; i <= fleetSize; i++) {
+                Location location = new Location(random.nextDouble() * 100, random.nextDouble() * 100);
+                Taxi taxi = new Taxi(i, location, null);
+                taxis.add(taxi);
+                grid.add(taxi, location);
+            }
+
+            Location[] queries = new Location[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = new Location(random.nextDouble() * 100, random.nextDouble() * 100);
+            }
+
+            int linearQueries = Math.max(100, Math.min(QUERIES, 50_000_000 / fleetSize / 10));
+            long sink = 0;
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                sink += runLinear(taxis, queries, linearQueries);
+                sink += runGrid(grid, queries, QUERIES);
+            }
+
+            long start = System.nanoTime();
+            sink += runLinear(taxis, queries, linearQueries);
+            double linearNanos = (System.nanoTime() - start) / (double) linearQueries;
+
+            start = System.nanoTime();
+            sink += runGrid(grid, queries, QUERIES);
+            double gridNanos = (System.nanoTime() - start) / (double) QUERIES;
+
+            for (int i = 0; i < linearQueries; i++) {
+                if (linearScan(taxis, queries[i]) != grid.nearest(queries[i])) {
+                    System.err.printf("[Benchmark] WARNING: Grid and linear scan disagree for query %s\n", queries[i]);
+                    break;
+                }
+            }
+
+            blackhole += sink;
+            System.out.printf("%-10d %15.0f %15.0f %9.1fx\n",
+                    fleetSize, linearNanos, gridNanos, linearNanos / gridNanos);
+        }
+    }
+
+    private static long runLinear(List<Taxi> taxis, Location[] queries, int count) {
+        long sink = 0;
+        for (int i = 0; i < count; i++) {
+            sink += linearScan(taxis, queries[i]).getId();
+        }
+        return sink;
+    }
+
+    private static long runGrid(TaxiGrid grid, Location[] queries, int count) {
+        long sink = 0;
+        for (int i = 0; i < count; i++) {
+            sink += grid.nearest(queries[i]).getId();
+        }
+        return sink;
+    }
+
+    private static Taxi linearScan(List<Taxi> taxis, Location location) {
+        Taxi nearestTaxi = null;
+        double minDistance = Double.MAX_VALUE;
+
+        for (Taxi taxi : taxis) {
+            if (taxi.isAvailable()) {
+                double distance = taxi.distanceTo(location);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearestTaxi = taxi;
+                }
+            }
+        }
+
+        return nearestTaxi;
+    }
+}
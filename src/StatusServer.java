@@ -0,0 +1,138 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+class StatusServer implements Closeable {
+    private static final int HIGHEST_STATE = Taxi.DISEMBARKING;
+
+    private final HttpServer server;
+    private final Dispatcher dispatcher;
+    private final ExecutorService executor;
+    private final AtomicLong served;
+
+    private StatusServer(HttpServer server, Dispatcher dispatcher) {
+        this.server = server;
+        this.dispatcher = dispatcher;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StatusServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.served = new AtomicLong();
+    }
+
+    static StatusServer start(Dispatcher dispatcher, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        StatusServer status = new StatusServer(server, dispatcher);
+        server.createContext("/status", status::serveStatus);
+        server.createContext("/fleet", status::serveFleet);
+        server.setExecutor(status.executor);
+        server.start();
+        return status;
+    }
+
+    public String getAddress() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public long getServed() {
+        return served.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serveStatus(HttpExchange exchange) throws IOException {
+        if (!isRead(exchange)) {
+            return;
+        }
+
+        FleetSnapshot fleet = dispatcher.getFleetStore().snapshot(dispatcher.currentTimeMillis());
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"timeMillis\":").append(fleet.getTimeMillis())
+                .append(",\"taxis\":").append(fleet.size())
+                .append(",\"states\":{");
+        for (int state = Taxi.AVAILABLE; state <= HIGHEST_STATE; state++) {
+            if (state > Taxi.AVAILABLE) {
+                json.append(',');
+            }
+            json.append('"').append(Taxi.stateName(state)).append("\":").append(fleet.count(state));
+        }
+        json.append("},\"completedRides\":").append(dispatcher.getCompletedRides())
+                .append(",\"queuedOrders\":").append(dispatcher.getQueueSize())
+                .append(",\"pendingOrders\":").append(dispatcher.getPendingOrders())
+                .append('}');
+        respond(exchange, json);
+    }
+
+    private void serveFleet(HttpExchange exchange) throws IOException {
+        if (!isRead(exchange)) {
+            return;
+        }
+
+        FleetSnapshot fleet = dispatcher.getFleetStore().snapshot(dispatcher.currentTimeMillis());
+        StringBuilder json = new StringBuilder(64 + fleet.size() * 80);
+        json.append("{\"timeMillis\":").append(fleet.getTimeMillis()).append(",\"taxis\":[");
+        for (int i = 0; i < fleet.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(fleet.getId(i))
+                    .append(",\"x\":").append(round(fleet.getX(i)))
+                    .append(",\"y\":").append(round(fleet.getY(i)))
+                    .append(",\"state\":\"").append(Taxi.stateName(fleet.getState(i))).append('"')
+                    .append(",\"request\":");
+            int requestId = fleet.getRequestId(i);
+            if (requestId == 0) {
+                json.append("null");
+            } else {
+                json.append(requestId);
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        respond(exchange, json);
+    }
+
+    private boolean isRead(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET") || method.equals("HEAD")) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+        exchange.sendResponseHeaders(405, -1);
+        exchange.close();
+        return false;
+    }
+
+    private void respond(HttpExchange exchange, StringBuilder json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(200, head ? -1 : body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+        served.incrementAndGet();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,21 @@
+class StraightLineTravel implements TravelModel {
+    static final StraightLineTravel INSTANCE = new StraightLineTravel();
+
+    private StraightLineTravel() {
+    }
+
+    @Override
+    public double distance(Location from, Location to) {
+        return from.distanceTo(to);
+    }
+
+    @Override
+    public double travelSeconds(Location from, Location to) {
+        return from.distanceTo(to);
+    }
+
+    @Override
+    public boolean isStraightLine() {
+        return true;
+    }
+}
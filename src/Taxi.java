@@ -1,132 +1,445 @@
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 class Taxi implements Runnable {
+    static final long BOARDING_TIME_MS = 1000;
+    static final long DISEMBARK_TIME_MS = 500;
+
+    static final int AVAILABLE = 0;
+    static final int ASSIGNED = 1;
+    static final int TO_PICKUP = 2;
+    static final int BOARDING = 3;
+    static final int ON_TRIP = 4;
+    static final int DISEMBARKING = 5;
+
+    private static final String[] STATE_NAMES = {
+            "available", "assigned", "driving to pickup", "boarding", "on trip", "disembarking"
+    };
+
+    private static final class Reposition {
+        private final Location origin;
+        private final Location target;
+        private final long startMillis;
+        private final long travelMillis;
+
+        private Reposition(Location origin, Location target, long startMillis, long travelMillis) {
+            this.origin = origin;
+            this.target = target;
+            this.startMillis = startMillis;
+            this.travelMillis = travelMillis;
+        }
+
+        private boolean isArrived(long nowMillis) {
+            return nowMillis - startMillis >= travelMillis;
+        }
+
+        private Location positionAt(long nowMillis) {
+            if (isArrived(nowMillis)) {
+                return target;
+            }
+            double progress = Math.max(0, nowMillis - startMillis) / (double) travelMillis;
+            return new Location(origin.getX() + (target.getX() - origin.getX()) * progress,
+                    origin.getY() + (target.getY() - origin.getY()) * progress);
+        }
+    }
+
     private final int id;
     private volatile Location currentLocation;
-    private volatile boolean available;
     private volatile RideRequest currentRequest;
-    private final ReentrantLock lock;
-    private final Dispatcher dispatcher;
+    private final AtomicInteger state;
+    private final AtomicReference<RideRequest> chainedRequest;
+    private final AtomicReference<Route> route;
+    private volatile long projectedFreeAtMillis;
+    private volatile Dispatcher dispatcher;
+    private volatile Thread driverThread;
+    private volatile FleetScheduler scheduler;
+    private long pickupStartMillis;
+    private volatile double distanceDriven;
+    private volatile Reposition reposition;
+    private int phaseState;
+    private RideRequest phaseRequest;
+    private Location phaseOrigin;
+    private long phaseStartMillis;
 
     public Taxi(int id, Location startLocation, Dispatcher dispatcher) {
         this.id = id;
         this.currentLocation = startLocation;
-        this.available = true;
         this.currentRequest = null;
-        this.lock = new ReentrantLock();
+        this.state = new AtomicInteger(AVAILABLE);
+        this.chainedRequest = new AtomicReference<>();
+        this.route = new AtomicReference<>();
         this.dispatcher = dispatcher;
     }
 
     public int getId() { return id; }
 
     public Location getCurrentLocation() {
-        lock.lock();
-        try {
-            return currentLocation;
-        } finally {
-            lock.unlock();
-        }
+        Reposition current = reposition;
+        return current == null ? currentLocation : current.positionAt(dispatcher.currentTimeMillis());
+    }
+
+    public RideRequest getCurrentRequest() { return currentRequest; }
+    public int getState() { return state.get(); }
+    public Route getRoute() { return route.get(); }
+    public double getDistanceDriven() { return distanceDriven; }
+
+    static String stateName(int state) {
+        return STATE_NAMES[state];
     }
 
     public boolean isAvailable() {
-        lock.lock();
-        try {
-            return available;
-        } finally {
-            lock.unlock();
-        }
+        return state.get() == AVAILABLE;
     }
 
-    public RideRequest getCurrentRequest() {
-        lock.lock();
-        try {
-            return currentRequest;
-        } finally {
-            lock.unlock();
+    public boolean isFinishing() {
+        int current = state.get();
+        return current == ON_TRIP || current == DISEMBARKING;
+    }
+
+    public long getProjectedFreeAtMillis() {
+        return projectedFreeAtMillis;
+    }
+
+    public Location getProjectedFreeLocation() {
+        RideRequest request = currentRequest;
+        return request == null ? currentLocation : request.getDestination();
+    }
+
+    boolean chainRequest(RideRequest request) {
+        if (!chainedRequest.compareAndSet(null, request)) {
+            return false;
         }
+        if (isFinishing()) {
+            return true;
+        }
+        return !chainedRequest.compareAndSet(request, null);
     }
 
     public double distanceTo(Location location) {
-        lock.lock();
-        try {
-            return currentLocation.distanceTo(location);
-        } finally {
-            lock.unlock();
+        return getCurrentLocation().distanceTo(location);
+    }
+
+    public boolean isRepositioning() {
+        return reposition != null;
+    }
+
+    public Location getRepositionTarget() {
+        Reposition current = reposition;
+        return current == null ? null : current.target;
+    }
+
+    void reposition(Location target, long nowMillis) {
+        settleReposition(nowMillis);
+        TravelModel travel = dispatcher.getTravelModel();
+        double distance = travel.distance(currentLocation, target);
+        long travelTime = travel.travelTimeMillis(currentLocation, target);
+        reposition = new Reposition(currentLocation, target, nowMillis, travelTime);
+        EventLog.log(LogEvent.TAXI_REPOSITIONING, id, target, distance, travelTime);
+    }
+
+    Location trackReposition(long nowMillis) {
+        Reposition current = reposition;
+        if (current == null) {
+            return currentLocation;
+        }
+        if (current.isArrived(nowMillis)) {
+            settleReposition(nowMillis);
+            return currentLocation;
+        }
+        Location position = current.positionAt(nowMillis);
+        FleetStore store = fleetStore();
+        if (store != null) {
+            store.updateLocation(id, position);
+        }
+        return position;
+    }
+
+    private void settleReposition(long nowMillis) {
+        Reposition current = reposition;
+        if (current != null) {
+            arriveAt(current.positionAt(nowMillis));
+            reposition = null;
         }
     }
 
     public boolean assignRequest(RideRequest request) {
-        lock.lock();
-        try {
-            if (available) {
-                currentRequest = request;
-                available = false;
-                return true;
-            }
+        return assign(request, null);
+    }
+
+    boolean assignRoute(Route pooledRoute) {
+        return assign(pooledRoute.head().getRequest(), pooledRoute);
+    }
+
+    boolean updateRoute(Route expected, Route updated) {
+        return route.compareAndSet(expected, updated);
+    }
+
+    private boolean assign(RideRequest request, Route pooledRoute) {
+        if (!state.compareAndSet(AVAILABLE, ASSIGNED)) {
             return false;
-        } finally {
-            lock.unlock();
         }
-    }
+        route.set(pooledRoute);
+        settleReposition(dispatcher.currentTimeMillis());
+        FleetStore store = fleetStore();
+        if (store != null) {
+            store.updateState(id, ASSIGNED, request);
+        }
+        trackPhase(AVAILABLE, ASSIGNED, request);
+        currentRequest = request;
 
-    private void simulateMovement(Location target, String action, String passengerInfo) throws InterruptedException {
-        lock.lock();
-        try {
-            double distance = currentLocation.distanceTo(target);
-            int travelTime = (int) (distance * 1000);
-            System.out.printf("[Taxi-%d] %s %s to %s (%.2f units, %d ms)\n",
-                    id, passengerInfo, action, target, distance, travelTime);
-
-            if (travelTime > 0) {
-                Thread.sleep(travelTime);
-                currentLocation = target;
+        FleetScheduler fleetScheduler = scheduler;
+        if (fleetScheduler != null) {
+            fleetScheduler.onAssigned(this);
+        } else {
+            Thread driver = driverThread;
+            if (driver != null) {
+                LockSupport.unpark(driver);
             }
-        } finally {
-            lock.unlock();
         }
+        return true;
     }
 
-    @Override
-    public void run() {
-        try {
-            while (true) {
-                while (isAvailable()) {
-                    Thread.sleep(100);
+    Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    void attachScheduler(FleetScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    static long travelTimeMillis(double distance) {
+        return (long) (distance * 1000);
+    }
+
+    long advanceRide() {
+        Route pooledRoute = route.get();
+        if (pooledRoute != null) {
+            return advanceRoute(pooledRoute);
+        }
+        RideRequest request = currentRequest;
+        switch (state.get()) {
+            case ASSIGNED:
+                EventLog.log(LogEvent.TAXI_RECEIVED, id, request);
+                pickupStartMillis = dispatcher.currentTimeMillis();
+                setState(TO_PICKUP);
+                return startMovement(request.getPickupLocation(), LogEvent.TAXI_TO_PICKUP);
+            case TO_PICKUP:
+                arriveAt(request.getPickupLocation());
+                latencyStats().getPickupMillis().record(dispatcher.currentTimeMillis() - pickupStartMillis);
+                EventLog.log(LogEvent.TAXI_ARRIVED, id);
+                setState(BOARDING);
+                return BOARDING_TIME_MS;
+            case BOARDING:
+                long travelTime = startMovement(request.getDestination(), LogEvent.TAXI_WITH_PASSENGER);
+                projectedFreeAtMillis = dispatcher.currentTimeMillis() + travelTime + DISEMBARK_TIME_MS;
+                chainedRequest.set(null);
+                setState(ON_TRIP);
+                dispatcher.notifyTripStarted(this);
+                return travelTime;
+            case ON_TRIP:
+                arriveAt(request.getDestination());
+                EventLog.log(LogEvent.TAXI_DELIVERED, id);
+                setState(DISEMBARKING);
+                return DISEMBARK_TIME_MS;
+            case DISEMBARKING:
+                latencyStats().getTripMillis().record(dispatcher.currentTimeMillis() - request.getTimestamp());
+                EventLog.log(LogEvent.TAXI_RIDE_COMPLETED, id, request.getId());
+                RideRequest next = sealChain(request);
+                if (next != null) {
+                    currentRequest = next;
+                    setState(ASSIGNED);
+                    dispatcher.notifyRideComplete(this, request);
+                    return 0;
                 }
+                completeRide(request);
+                return -1;
+            default:
+                return -1;
+        }
+    }
 
-                RideRequest request = getCurrentRequest();
-                if (request == null) continue;
+    private long advanceRoute(Route pooledRoute) {
+        switch (state.get()) {
+            case ASSIGNED:
+                EventLog.log(LogEvent.TAXI_RECEIVED, id, pooledRoute.head().getRequest());
+                return departToNextStop();
+            case TO_PICKUP:
+            case ON_TRIP:
+                Route.Stop stop = pooledRoute.head();
+                arriveAt(stop.getLocation());
+                Route remaining;
+                do {
+                    pooledRoute = route.get();
+                    remaining = pooledRoute.advance();
+                } while (!route.compareAndSet(pooledRoute, remaining));
+                dispatcher.notifyRouteChanged(this);
+                currentRequest = stop.getRequest();
+                if (stop.isPickup()) {
+                    latencyStats().getPickupMillis().record(dispatcher.currentTimeMillis() - stop.getAssignedAtMillis());
+                    EventLog.log(LogEvent.TAXI_ARRIVED, id);
+                    setState(BOARDING);
+                    return BOARDING_TIME_MS;
+                }
+                EventLog.log(LogEvent.TAXI_DELIVERED, id);
+                setState(DISEMBARKING);
+                return DISEMBARK_TIME_MS;
+            case BOARDING:
+                return departToNextStop();
+            case DISEMBARKING:
+                RideRequest delivered = currentRequest;
+                latencyStats().getTripMillis().record(dispatcher.currentTimeMillis() - delivered.getTimestamp());
+                EventLog.log(LogEvent.TAXI_RIDE_COMPLETED, id, delivered.getId());
+                if (pooledRoute.isEmpty()) {
+                    chainedRequest.set(null);
+                    completeRide(delivered);
+                    return -1;
+                }
+                long travelTime = departToNextStop();
+                dispatcher.notifyRideComplete(this, delivered);
+                return travelTime;
+            default:
+                return -1;
+        }
+    }
 
-                System.out.printf("[Taxi-%d] Received order %s\n", id, request);
+    private long departToNextStop() {
+        Route current;
+        Route locked;
+        do {
+            current = route.get();
+            locked = current.lockHead();
+        } while (!route.compareAndSet(current, locked));
 
-                try {
-                    simulateMovement(request.getPickupLocation(), "driving", "To pick up");
+        Route.Stop next = locked.head();
+        currentRequest = next.getRequest();
+        if (next.isPickup()) {
+            setState(TO_PICKUP);
+            return startMovement(next.getLocation(), LogEvent.TAXI_TO_PICKUP);
+        }
+        setState(ON_TRIP);
+        return startMovement(next.getLocation(), LogEvent.TAXI_WITH_PASSENGER);
+    }
+
+    private LatencyStats latencyStats() {
+        return dispatcher.getLatencyStats();
+    }
+
+    private FleetStore fleetStore() {
+        Dispatcher owner = dispatcher;
+        return owner == null ? null : owner.getFleetStore();
+    }
 
-                    System.out.printf("[Taxi-%d] Arrived at client, boarding\n", id);
-                    Thread.sleep(1000);
+    private void setState(int next) {
+        FleetStore store = fleetStore();
+        if (store != null) {
+            store.updateState(id, next, currentRequest);
+        }
+        int previous = state.getAndSet(next);
+        trackPhase(previous, next, currentRequest);
+    }
 
-                    simulateMovement(request.getDestination(), "driving", "With passenger");
+    private void trackPhase(int ended, int started, RideRequest request) {
+        FlightEvents.MovementPhase phase = new FlightEvents.MovementPhase();
+        if (!phase.isEnabled()) {
+            return;
+        }
 
-                    System.out.printf("[Taxi-%d] Passenger delivered, disembarking\n", id);
-                    Thread.sleep(500);
+        long now = dispatcher.currentTimeMillis();
+        RideRequest endedRequest = phaseRequest;
+        if (ended == phaseState && endedRequest != null) {
+            phase.taxiId = id;
+            phase.requestId = endedRequest.getId();
+            phase.phase = stateName(ended);
+            phase.distance = ended == TO_PICKUP || ended == ON_TRIP
+                    ? dispatcher.getTravelModel().distance(phaseOrigin, currentLocation)
+                    : 0;
+            phase.phaseTime = Math.max(0, now - phaseStartMillis);
+            phase.commit();
+        }
+        phaseState = started;
+        phaseRequest = request;
+        phaseOrigin = currentLocation;
+        phaseStartMillis = now;
+    }
 
-                    System.out.printf("[Taxi-%d] Ride #%d completed\n", id, request.getId());
+    void arriveAt(Location target) {
+        FleetStore store = fleetStore();
+        if (store != null) {
+            store.updateLocation(id, target);
+        }
+        distanceDriven += dispatcher.getTravelModel().distance(currentLocation, target);
+        currentLocation = target;
+    }
 
-                } finally {
-                    lock.lock();
-                    try {
-                        available = true;
-                        currentRequest = null;
-                    } finally {
-                        lock.unlock();
+    void completeRide(RideRequest request) {
+        RideRequest orphan = sealChain(request);
+        route.set(null);
+        currentRequest = null;
+        setState(AVAILABLE);
+        chainedRequest.compareAndSet(request, null);
+
+        dispatcher.notifyRideComplete(this, request);
+        if (orphan != null) {
+            dispatcher.requeueChained(orphan);
+        }
+    }
+
+    private RideRequest sealChain(RideRequest finished) {
+        RideRequest next = chainedRequest.getAndSet(finished);
+        return next == finished ? null : next;
+    }
+
+    private long startMovement(Location target, LogEvent event) {
+        TravelModel travel = dispatcher.getTravelModel();
+        double distance = travel.distance(currentLocation, target);
+        long travelTime = travel.travelTimeMillis(currentLocation, target);
+        EventLog.log(event, id, target, distance, travelTime);
+        return travelTime;
+    }
+
+    @Override
+    public void run() {
+        driverThread = Thread.currentThread();
+        try {
+            while (true) {
+                while (isAvailable()) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
                     }
+                }
 
-                    dispatcher.notifyRideComplete(this, request);
+                if (getCurrentRequest() == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                boolean finished = false;
+                try {
+                    long delay;
+                    while ((delay = advanceRide()) >= 0) {
+                        if (delay > 0) {
+                            Thread.sleep(delay);
+                        }
+                    }
+                    finished = true;
+                } finally {
+                    RideRequest request = getCurrentRequest();
+                    if (!finished && request != null) {
+                        completeRide(request);
+                    }
                 }
             }
         } catch (InterruptedException e) {
-            System.out.printf("[Taxi-%d] Shutting down\n", id);
+            EventLog.log(LogEvent.TAXI_SHUTDOWN, id);
             Thread.currentThread().interrupt();
+        } finally {
+            driverThread = null;
         }
     }
 }
\ No newline at end of file
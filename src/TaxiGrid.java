@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class TaxiGrid {
+    private final int cellsPerSide;
+    private final double cellSize;
+    private final List<List<Entry>> cells;
+    private final Map<Integer, Entry> entries;
+
+    public TaxiGrid(double mapSize, int cellsPerSide) {
+        this.cellsPerSide = cellsPerSide;
+        this.cellSize = mapSize / cellsPerSide;
+        this.cells = new ArrayList<>(cellsPerSide * cellsPerSide);
+        this.entries = new HashMap<>();
+
+        for (int i = 0; i < cellsPerSide * cellsPerSide; i++) {
+            cells.add(new ArrayList<>(4));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<Taxi> taxis() {
+        List<Taxi> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            result.add(entry.taxi);
+        }
+        return result;
+    }
+
+    public boolean contains(Taxi taxi) {
+        return entries.containsKey(taxi.getId());
+    }
+
+    public void add(Taxi taxi, Location location) {
+        remove(taxi);
+        int cell = cellIndex(cellCoord(location.getX()), cellCoord(location.getY()));
+        Entry entry = new Entry(taxi, location, cell);
+        cells.get(cell).add(entry);
+        entries.put(taxi.getId(), entry);
+    }
+
+    public boolean remove(Taxi taxi) {
+        Entry entry = entries.remove(taxi.getId());
+        if (entry == null) {
+            return false;
+        }
+
+        List<Entry> cell = cells.get(entry.cell);
+        int index = cell.indexOf(entry);
+        int last = cell.size() - 1;
+        cell.set(index, cell.get(last));
+        cell.remove(last);
+        return true;
+    }
+
+    public Taxi nearest(Location location) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        int cx = cellCoord(location.getX());
+        int cy = cellCoord(location.getY());
+        Entry best = null;
+
+        for (int ring = 0; ring < cellsPerSide; ring++) {
+            int minX = cx - ring;
+            int maxX = cx + ring;
+            int minY = cy - ring;
+            int maxY = cy + ring;
+
+            for (int x = minX; x <= maxX; x++) {
+                best = scanCell(x, minY, location, best);
+                if (ring > 0) {
+                    best = scanCell(x, maxY, location, best);
+                }
+            }
+            for (int y = minY + 1; y < maxY; y++) {
+                best = scanCell(minX, y, location, best);
+                best = scanCell(maxX, y, location, best);
+            }
+
+            double reach = ring * cellSize;
+            if (best != null && best.squaredDistanceTo(location) <= reach * reach) {
+                break;
+            }
+        }
+
+        return best == null ? null : best.taxi;
+    }
+
+    public List<Taxi> nearest(Location location, int k) {
+        List<Entry> found = new ArrayList<>(k + 1);
+        List<Taxi> result = new ArrayList<>(k);
+        if (entries.isEmpty() || k <= 0) {
+            return result;
+        }
+
+        int cx = cellCoord(location.getX());
+        int cy = cellCoord(location.getY());
+
+        for (int ring = 0; ring < cellsPerSide; ring++) {
+            int minX = cx - ring;
+            int maxX = cx + ring;
+            int minY = cy - ring;
+            int maxY = cy + ring;
+
+            for (int x = minX; x <= maxX; x++) {
+                collectCell(x, minY, location, k, found);
+                if (ring > 0) {
+                    collectCell(x, maxY, location, k, found);
+                }
+            }
+            for (int y = minY + 1; y < maxY; y++) {
+                collectCell(minX, y, location, k, found);
+                collectCell(maxX, y, location, k, found);
+            }
+
+            if (found.size() == k && found.get(k - 1).location.distanceTo(location) <= ring * cellSize) {
+                break;
+            }
+        }
+
+        for (Entry entry : found) {
+            result.add(entry.taxi);
+        }
+        return result;
+    }
+
+    private void collectCell(int x, int y, Location location, int k, List<Entry> found) {
+        if (x < 0 || y < 0 || x >= cellsPerSide || y >= cellsPerSide) {
+            return;
+        }
+
+        for (Entry entry : cells.get(cellIndex(x, y))) {
+            double distance = entry.location.distanceTo(location);
+            if (found.size() == k && distance >= found.get(k - 1).location.distanceTo(location)) {
+                continue;
+            }
+
+            int index = found.size();
+            while (index > 0 && found.get(index - 1).location.distanceTo(location) > distance) {
+                index--;
+            }
+            found.add(index, entry);
+            if (found.size() > k) {
+                found.remove(k);
+            }
+        }
+    }
+
+    private Entry scanCell(int x, int y, Location location, Entry best) {
+        if (x < 0 || y < 0 || x >= cellsPerSide || y >= cellsPerSide) {
+            return best;
+        }
+
+        double bestDistance = best == null ? Double.MAX_VALUE : best.squaredDistanceTo(location);
+        List<Entry> cell = cells.get(cellIndex(x, y));
+        for (int i = 0, n = cell.size(); i < n; i++) {
+            Entry entry = cell.get(i);
+            double distance = entry.squaredDistanceTo(location);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = entry;
+            }
+        }
+        return best;
+    }
+
+    private int cellCoord(double value) {
+        int coord = (int) (value / cellSize);
+        if (coord < 0) return 0;
+        if (coord >= cellsPerSide) return cellsPerSide - 1;
+        return coord;
+    }
+
+    private int cellIndex(int x, int y) {
+        return y * cellsPerSide + x;
+    }
+
+    private static final class Entry {
+        private final Taxi taxi;
+        private final Location location;
+        private final double x;
+        private final double y;
+        private final int cell;
+
+        private Entry(Taxi taxi, Location location, int cell) {
+            this.taxi = taxi;
+            this.location = location;
+            this.x = location.getX();
+            this.y = location.getY();
+            this.cell = cell;
+        }
+
+        private double squaredDistanceTo(Location target) {
+            double dx = x - target.getX();
+            double dy = y - target.getY();
+            return dx * dx + dy * dy;
+        }
+    }
+}
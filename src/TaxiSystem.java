@@ -1,20 +1,48 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.Scanner;
+import java.util.function.LongSupplier;
 
 public class TaxiSystem {
+    private static final long BATCH_WINDOW_MS = 200;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final int ZONES_PER_SIDE = 4;
+    private static final double MAP_SIZE = 100.0;
+    private static final int BUSIEST_ZONES = 3;
+    private static final long DRAIN_TIMEOUT_SECONDS = 600;
+    private static final long MIN_INTAKE_SWEEP_MILLIS = 100;
+
     private static int numberOfOrders;
+    private static int recoveredRides;
     private static int taxiCount;
     private static double minDistance;
     private static double estimatedTimeSeconds;
 
-    public static void main(String[] args) throws InterruptedException {
-        Scanner scanner = new Scanner(System.in);
+    public static void main(String[] args) throws InterruptedException, IOException {
+        SimulationConfig config = SimulationConfig.fromArgs(args);
+
+        boolean simulate = config.isSimulate();
+        boolean scheduled = config.isScheduler();
+        boolean batched = config.isBatch();
+        boolean zoned = config.isZones();
+        boolean quiet = config.isQuiet();
+        String tracePath = config.getTrace();
+        String recordPath = config.getRecord();
+        double replaySpeed = config.getSpeed();
+        long seed = config.getSeed();
+
+        if (quiet) {
+            EventLog.setLevel(EventLog.Level.INFO);
+        }
+        FlightEvents.register();
 
         System.out.println("AUTONOMOUS TAXI SYSTEM\n");
 
         final int MAX_ORDERS = 1000;
-        final int MAX_TAXIS = 50;
+        final int MAX_TAXIS = simulate || scheduled ? 100_000 : 50;
         final double MAX_DISTANCE = 100.0;
 
         final int RECOMMENDED_ORDERS = 10;
@@ -26,88 +54,117 @@ public class TaxiSystem {
                 RECOMMENDED_TAXIS + " taxis, " + RECOMMENDED_DISTANCE + " min distance");
         System.out.println("With recommended values: execution ~20-30 seconds\n");
 
-        System.out.printf("Enter number of orders to generate (1-%d):\n", MAX_ORDERS);
-        System.out.printf("Recommended: %d | For values > 50, execution may exceed 1 minute\n", RECOMMENDED_ORDERS);
-        while (true) {
-            System.out.print("> ");
-            String input = scanner.nextLine();
-            try {
-                if (input.isEmpty()) {
-                    numberOfOrders = RECOMMENDED_ORDERS;
-                    System.out.printf("Using recommended value: %d orders\n", RECOMMENDED_ORDERS);
-                    break;
-                }
-                numberOfOrders = Integer.parseInt(input);
-                if (numberOfOrders < 1) {
-                    System.out.println("Error: Minimum 1 order required");
-                } else if (numberOfOrders > MAX_ORDERS) {
-                    System.out.printf("Error: Maximum %d orders allowed\n", MAX_ORDERS);
-                } else {
-                    if (numberOfOrders == RECOMMENDED_ORDERS) {
-                        System.out.println("Using recommended value");
+        if (config.isHeadless()) {
+            numberOfOrders = tracePath != null ? 0 : config.getOrders();
+            taxiCount = config.getTaxis();
+            minDistance = config.getMinDistance();
+            if (tracePath == null && numberOfOrders < 1) {
+                throw new IllegalArgumentException("orders must be at least 1");
+            }
+            if (taxiCount < 1) {
+                throw new IllegalArgumentException("taxis must be at least 1");
+            }
+            if (minDistance < 1.0 || minDistance > MAX_DISTANCE) {
+                throw new IllegalArgumentException(String.format("minDistance must be between 1.0 and %.1f", MAX_DISTANCE));
+            }
+            System.out.printf("Headless configuration: %d orders, %d taxis, %.1f min distance, seed %d\n",
+                    numberOfOrders, taxiCount, minDistance, seed);
+            if (tracePath != null) {
+                System.out.printf("Replaying orders from trace %s (speed %s)\n", tracePath,
+                        replaySpeed > 0 ? replaySpeed + "x" : "unpaced");
+            }
+        } else {
+            Scanner scanner = new Scanner(System.in);
+
+            if (tracePath != null) {
+                numberOfOrders = 0;
+                System.out.printf("Replaying orders from trace %s (speed %s)\n", tracePath,
+                        replaySpeed > 0 ? replaySpeed + "x" : "unpaced");
+            } else {
+                System.out.printf("Enter number of orders to generate (1-%d):\n", MAX_ORDERS);
+                System.out.printf("Recommended: %d | For values > 50, execution may exceed 1 minute\n", RECOMMENDED_ORDERS);
+            }
+            while (tracePath == null) {
+                System.out.print("> ");
+                String input = scanner.nextLine();
+                try {
+                    if (input.isEmpty()) {
+                        numberOfOrders = RECOMMENDED_ORDERS;
+                        System.out.printf("Using recommended value: %d orders\n", RECOMMENDED_ORDERS);
+                        break;
+                    }
+                    numberOfOrders = Integer.parseInt(input);
+                    if (numberOfOrders < 1) {
+                        System.out.println("Error: Minimum 1 order required");
+                    } else if (numberOfOrders > MAX_ORDERS) {
+                        System.out.printf("Error: Maximum %d orders allowed\n", MAX_ORDERS);
+                    } else {
+                        if (numberOfOrders == RECOMMENDED_ORDERS) {
+                            System.out.println("Using recommended value");
+                        }
+                        break;
                     }
-                    break;
+                } catch (NumberFormatException e) {
+                    System.out.println("Error: Please enter a valid number");
                 }
-            } catch (NumberFormatException e) {
-                System.out.println("Error: Please enter a valid number");
             }
-        }
 
-        System.out.printf("\nEnter number of taxis (1-%d):\n", MAX_TAXIS);
-        System.out.printf("Recommended: %d | More taxis = faster processing\n", RECOMMENDED_TAXIS);
-        while (true) {
-            System.out.print("> ");
-            String input = scanner.nextLine();
-            try {
-                if (input.isEmpty()) {
-                    taxiCount = RECOMMENDED_TAXIS;
-                    System.out.printf("Using recommended value: %d taxis\n", RECOMMENDED_TAXIS);
-                    break;
-                }
-                taxiCount = Integer.parseInt(input);
-                if (taxiCount < 1) {
-                    System.out.println("Error: Minimum 1 taxi required");
-                } else if (taxiCount > MAX_TAXIS) {
-                    System.out.printf("Error: Maximum %d taxis allowed\n", MAX_TAXIS);
-                } else {
-                    if (taxiCount == RECOMMENDED_TAXIS) {
-                        System.out.println("Using recommended value");
+            System.out.printf("\nEnter number of taxis (1-%d):\n", MAX_TAXIS);
+            System.out.printf("Recommended: %d | More taxis = faster processing\n", RECOMMENDED_TAXIS);
+            while (true) {
+                System.out.print("> ");
+                String input = scanner.nextLine();
+                try {
+                    if (input.isEmpty()) {
+                        taxiCount = RECOMMENDED_TAXIS;
+                        System.out.printf("Using recommended value: %d taxis\n", RECOMMENDED_TAXIS);
+                        break;
+                    }
+                    taxiCount = Integer.parseInt(input);
+                    if (taxiCount < 1) {
+                        System.out.println("Error: Minimum 1 taxi required");
+                    } else if (taxiCount > MAX_TAXIS) {
+                        System.out.printf("Error: Maximum %d taxis allowed\n", MAX_TAXIS);
+                    } else {
+                        if (taxiCount == RECOMMENDED_TAXIS) {
+                            System.out.println("Using recommended value");
+                        }
+                        break;
                     }
-                    break;
+                } catch (NumberFormatException e) {
+                    System.out.println("Error: Please enter a valid number");
                 }
-            } catch (NumberFormatException e) {
-                System.out.println("Error: Please enter a valid number");
             }
-        }
 
-        System.out.printf("\nEnter minimum ride distance (1-%.1f):\n", MAX_DISTANCE);
-        System.out.printf("Recommended: %.1f | For values > 50, execution may exceed 1 minute\n", RECOMMENDED_DISTANCE);
-        while (true) {
-            System.out.print("> ");
-            String input = scanner.nextLine();
-            try {
-                if (input.isEmpty()) {
-                    minDistance = RECOMMENDED_DISTANCE;
-                    System.out.printf("Using recommended value: %.1f units\n", RECOMMENDED_DISTANCE);
-                    break;
-                }
-                minDistance = Double.parseDouble(input);
-                if (minDistance < 1.0) {
-                    System.out.println("Error: Minimum distance is 1.0");
-                } else if (minDistance > MAX_DISTANCE) {
-                    System.out.printf("Error: Maximum distance is %.1f\n", MAX_DISTANCE);
-                } else {
-                    if (Math.abs(minDistance - RECOMMENDED_DISTANCE) < 0.01) {
-                        System.out.println("Using recommended value");
+            System.out.printf("\nEnter minimum ride distance (1-%.1f):\n", MAX_DISTANCE);
+            System.out.printf("Recommended: %.1f | For values > 50, execution may exceed 1 minute\n", RECOMMENDED_DISTANCE);
+            while (true) {
+                System.out.print("> ");
+                String input = scanner.nextLine();
+                try {
+                    if (input.isEmpty()) {
+                        minDistance = RECOMMENDED_DISTANCE;
+                        System.out.printf("Using recommended value: %.1f units\n", RECOMMENDED_DISTANCE);
+                        break;
+                    }
+                    minDistance = Double.parseDouble(input);
+                    if (minDistance < 1.0) {
+                        System.out.println("Error: Minimum distance is 1.0");
+                    } else if (minDistance > MAX_DISTANCE) {
+                        System.out.printf("Error: Maximum distance is %.1f\n", MAX_DISTANCE);
+                    } else {
+                        if (Math.abs(minDistance - RECOMMENDED_DISTANCE) < 0.01) {
+                            System.out.println("Using recommended value");
+                        }
+                        break;
                     }
-                    break;
+                } catch (NumberFormatException e) {
+                    System.out.println("Error: Please enter a valid number");
                 }
-            } catch (NumberFormatException e) {
-                System.out.println("Error: Please enter a valid number");
             }
-        }
 
-        scanner.close();
+            scanner.close();
+        }
 
         System.out.println("\n" + "=".repeat(60));
         System.out.println("[Main] ESTIMATED EXECUTION TIME CALCULATION");
@@ -190,35 +247,241 @@ public class TaxiSystem {
             System.out.printf("[Main] Estimated execution: %.1f seconds\n", estimatedTimeSeconds);
         }
 
-        System.out.println("\n[Main] Starting system in 3 seconds...");
-        Thread.sleep(3000);
+        long startTime = System.currentTimeMillis();
+        long startDelayMillis = config.getStartDelayMillis();
+        if (!simulate && startDelayMillis > 0) {
+            System.out.printf("\n[Main] Starting system in %.0f seconds...\n", startDelayMillis / 1000.0);
+            Thread.sleep(startDelayMillis);
+        }
 
         BlockingQueue<RideRequest> requestQueue = new LinkedBlockingQueue<>();
-        Dispatcher dispatcher = new Dispatcher(requestQueue);
+        Dispatcher dispatcher = zoned
+                ? new ZonedDispatcher(requestQueue, ZONES_PER_SIDE)
+                : new Dispatcher(requestQueue);
+        if (batched) {
+            dispatcher.enableBatching(BATCH_WINDOW_MS, MAX_BATCH_SIZE);
+        }
+        if (config.isEta()) {
+            dispatcher.enableEtaDispatch();
+        }
+        if (config.isPool()) {
+            dispatcher.enablePooling(config.getPoolCapacity(), config.getMaxDetour(),
+                    config.getMaxPickupWaitMillis());
+        }
+        if (config.isRebalance()) {
+            dispatcher.enableRebalancing(config.getRebalanceIntervalMillis(), config.getDemandHalfLifeMillis());
+        }
+        if (config.isRoads()) {
+            RoadNetwork roads = RoadNetwork.fromConfig(config, seed);
+            dispatcher.setTravelModel(roads);
+            System.out.printf("[Main] Road network: %d intersections, %d blocked streets\n",
+                    roads.getNodeCount(), roads.getBlockedStreets());
+        }
+
+        RideJournal journal = config.getJournal() == null
+                ? null
+                : RideJournal.open(Paths.get(config.getJournal()), config.getSnapshotIntervalMillis());
+        RideJournal.Recovery recovery = journal == null ? null : journal.getRecovery();
+        if (recovery != null && !recovery.isEmpty()) {
+            System.out.printf("[Journal] Recovered %d taxis, %d completed rides and %d open orders "
+                            + "(snapshot at record %d + %d journal records)\n",
+                    recovery.getTaxiCount(), recovery.getCompletedRides(), recovery.getOpenRides(),
+                    recovery.getSnapshotRecords(), recovery.getReplayedRecords());
+        }
 
         List<Taxi> taxis = new ArrayList<>();
-        List<Thread> taxiThreads = new ArrayList<>();
-        Random random = new Random();
+        Map<Integer, Taxi> fleet = new HashMap<>();
+        Random random = new Random(seed);
+        int fleetSize = recovery == null ? taxiCount : Math.max(taxiCount, recovery.getHighestTaxiId());
 
-        for (int i = 1; i <= taxiCount; i++) {
+        for (int i = 1; i <= fleetSize; i++) {
             Location startLocation = new Location(
                     random.nextDouble() * 100,
                     random.nextDouble() * 100
             );
-            Taxi taxi = new Taxi(i, startLocation, dispatcher);
+            Location recovered = recovery == null ? null : recovery.getTaxiLocation(i);
+            Taxi taxi = new Taxi(i, recovered != null ? recovered : startLocation, dispatcher);
             taxis.add(taxi);
+            fleet.put(i, taxi);
             dispatcher.registerTaxi(taxi);
+        }
+
+        EventLog.flush();
 
-            Thread taxiThread = new Thread(taxi, "Taxi-" + i);
-            taxiThreads.add(taxiThread);
+        RideIntake intake = RideIntake.fromConfig(config, dispatcher::currentTimeMillis);
+        DispatchService service = new DispatchService(dispatcher, intake);
+        TraceRecorder recorder = null;
+        if (recordPath != null) {
+            recorder = new TraceRecorder(Paths.get(recordPath));
+            service.setRideListener(recorder);
+        }
+        RideListener downstream = recorder;
+        RideHistory history = null;
+        if (config.isHistory()) {
+            history = new RideHistory();
+            history.setRideListener(recorder);
+            service.setRideListener(history);
+            downstream = history;
+        }
+
+        List<Taxi> resumed = Collections.emptyList();
+        int recoveredOrders = 0;
+        if (journal != null) {
+            journal.setRideListener(downstream);
+            service.setRideListener(journal);
+            journal.recordTaxis(taxis, dispatcher.currentTimeMillis());
+            if (!recovery.isEmpty()) {
+                recoveredOrders = recovery.getOpenRides();
+                recoveredRides = recovery.getCompletedRides() + recoveredOrders;
+                resumed = recovery.restore(dispatcher, fleet, simulate ? 0 : dispatcher.currentTimeMillis());
+                System.out.printf("[Journal] Resumed %d in-flight rides, %d recovered orders waiting for a taxi\n",
+                        resumed.size(), dispatcher.getPendingOrders());
+            }
+        }
+
+        StatusServer statusServer = null;
+        if (config.getStatusPort() >= 0) {
+            statusServer = StatusServer.start(dispatcher, config.getStatusPort());
+            System.out.printf("[Main] Status endpoint: %s/status and %s/fleet\n",
+                    statusServer.getAddress(), statusServer.getAddress());
+        }
+
+        Path trace = tracePath == null ? null : Paths.get(tracePath);
+        CustomerGenerator generator = new CustomerGenerator(intake, numberOfOrders, minDistance, new Random(seed + 1));
+
+        if (simulate) {
+            runSimulation(dispatcher, generator, trace, resumed);
+        } else {
+            long drainTimeoutSeconds = config.getLong("drainTimeoutSeconds", DRAIN_TIMEOUT_SECONDS);
+            long extraRides = recoveredOrders;
+            intake.subscribe(dispatcher);
+            if (trace != null) {
+                TraceReplayer replayer = new TraceReplayer(trace, intake, replaySpeed);
+                runRealTime(dispatcher, service, intake, replayer, () -> replayer.getReplayed() + extraRides,
+                        taxis, scheduled, drainTimeoutSeconds);
+            } else {
+                runRealTime(dispatcher, service, intake, generator, () -> generator.getCreatedOrders() + extraRides,
+                        taxis, scheduled, drainTimeoutSeconds);
+            }
+        }
+        EventLog.flush();
+
+        if (statusServer != null) {
+            statusServer.close();
+            System.out.printf("[Main] Status endpoint served %d requests\n", statusServer.getServed());
+        }
+
+        if (journal != null) {
+            journal.close();
+            System.out.printf("[Journal] %d records in %d group commits, %d snapshots written to %s\n",
+                    journal.getRecords(), journal.getCommits(), journal.getSnapshots(), config.getJournal());
+        }
+
+        if (history != null) {
+            printHistory(history);
+        }
+
+        if (recorder != null) {
+            service.setRideListener(null);
+            recorder.close();
+            System.out.printf("[Main] Recorded %d rides to %s\n", recorder.getWritten(), recordPath);
+        }
+
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("[Main] FINAL REPORT");
+        System.out.println("[Main] Configuration used:");
+        System.out.printf("[Main]   Orders: %d (recommended: %d)\n",
+                numberOfOrders, RECOMMENDED_ORDERS);
+        System.out.printf("[Main]   Taxis: %d (recommended: %d)\n",
+                taxiCount, RECOMMENDED_TAXIS);
+        System.out.printf("[Main]   Min distance: %.1f (recommended: %.1f)\n",
+                minDistance, RECOMMENDED_DISTANCE);
+
+        long endTime = System.currentTimeMillis();
+        double actualTimeSeconds = (endTime - startTime) / 1000.0;
+
+        System.out.println("\n[Main] Performance summary:");
+        System.out.printf("[Main]   Estimated time: %.1f seconds\n", estimatedTimeSeconds);
+        System.out.printf("[Main]   Actual time: %.1f seconds\n", actualTimeSeconds);
+        System.out.printf("[Main]   Recommended time: %.1f seconds\n", recommendedTimeSeconds);
+
+        if (estimatedTimeSeconds > 0) {
+            double efficiency = (recommendedTimeSeconds / estimatedTimeSeconds) * 100;
+            if (efficiency > 110) {
+                System.out.printf("[Main]   Efficiency: %.1f%% (better than recommended)\n", efficiency);
+            } else if (efficiency > 90) {
+                System.out.printf("[Main]   Efficiency: %.1f%% (similar to recommended)\n", efficiency);
+            } else {
+                System.out.printf("[Main]   Efficiency: %.1f%% (slower than recommended)\n", efficiency);
+            }
+        }
+
+        System.out.println();
+        dispatcher.printStatus();
+        if (dispatcher.getTravelModel() instanceof RoadNetwork) {
+            RoadNetwork roads = (RoadNetwork) dispatcher.getTravelModel();
+            long lookups = roads.getCacheHits() + roads.getCacheMisses();
+            System.out.printf("[Status] Route cache: %d legs, %.1f%% hit rate over %d lookups\n",
+                    roads.getCachedLegs(), lookups == 0 ? 0 : roads.getCacheHits() * 100.0 / lookups, lookups);
+        }
+        dispatcher.getLatencyStats().printReport();
+
+        if (!allRecommended && estimatedTimeSeconds > recommendedTimeSeconds * 1.2) {
+            System.out.println("\n[Main] SUGGESTION: For faster execution next time, try:");
+            System.out.printf("[Main]   Orders: %d, Taxis: %d, Min distance: %.1f\n",
+                    RECOMMENDED_ORDERS, RECOMMENDED_TAXIS, RECOMMENDED_DISTANCE);
+        }
+
+        System.out.println("[Main] SYSTEM STOPPED");
+
+    }
+
+    private static void runSimulation(Dispatcher dispatcher, CustomerGenerator generator, Path trace,
+                                      List<Taxi> resumed) throws IOException {
+        System.out.println("\n[Main] Running discrete-event simulation...\n");
+
+        long startNanos = System.nanoTime();
+        DiscreteEventSimulation simulation;
+        if (trace != null) {
+            try (TraceReader reader = new TraceReader(trace)) {
+                simulation = new DiscreteEventSimulation(dispatcher, reader);
+                simulation.resume(resumed);
+                simulation.run();
+            }
+        } else {
+            simulation = new DiscreteEventSimulation(dispatcher, generator);
+            simulation.resume(resumed);
+            simulation.run();
+        }
+        long wallMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        EventLog.flush();
+
+        System.out.printf("\n[Main] Simulated %.1f seconds of traffic in %d ms (%d events)\n",
+                simulation.getSimulatedTimeMillis() / 1000.0, wallMillis, simulation.getProcessedEvents());
+    }
+
+    private static void runRealTime(Dispatcher dispatcher, DispatchService service, RideIntake intake,
+                                    Runnable generator, LongSupplier producedOrders, List<Taxi> taxis,
+                                    boolean scheduled, long drainTimeoutSeconds) throws InterruptedException {
+        List<Thread> taxiThreads = new ArrayList<>();
+        FleetScheduler fleetScheduler = null;
+        if (scheduled) {
+            fleetScheduler = new FleetScheduler();
+            for (Taxi taxi : taxis) {
+                fleetScheduler.attach(taxi);
+            }
+            taxiThreads.add(new Thread(fleetScheduler, "FleetScheduler"));
+        } else {
+            for (Taxi taxi : taxis) {
+                taxiThreads.add(new Thread(taxi, "Taxi-" + taxi.getId()));
+            }
         }
 
-        CustomerGenerator generator = new CustomerGenerator(requestQueue, numberOfOrders, minDistance);
         Thread generatorThread = new Thread(generator, "Generator");
 
         Thread dispatcherThread = new Thread(dispatcher, "Dispatcher");
 
-        final int finalNumberOfOrders = numberOfOrders;
+        final int finalNumberOfOrders = numberOfOrders + recoveredRides;
         final double finalEstimatedTimeSeconds = estimatedTimeSeconds;
         final Dispatcher finalDispatcher = dispatcher;
 
@@ -257,6 +520,37 @@ public class TaxiSystem {
         }, "Monitor");
         statusMonitor.setDaemon(true);
 
+        Thread rebalancer = null;
+        if (dispatcher.isRebalancing()) {
+            rebalancer = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(finalDispatcher.getRebalanceIntervalMillis());
+                        finalDispatcher.rebalanceIdleTaxis(finalDispatcher.currentTimeMillis());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Rebalancer");
+            rebalancer.setDaemon(true);
+        }
+
+        Thread intakeSweeper = null;
+        if (intake.getTtlMillis() > 0) {
+            long sweepMillis = Math.max(MIN_INTAKE_SWEEP_MILLIS, intake.getTtlMillis() / 4);
+            intakeSweeper = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(sweepMillis);
+                        intake.expireStale();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "IntakeSweeper");
+            intakeSweeper.setDaemon(true);
+        }
+
         System.out.println("\n[Main] Starting threads...\n");
 
         for (Thread taxiThread : taxiThreads) {
@@ -273,31 +567,60 @@ public class TaxiSystem {
         statusMonitor.start();
         System.out.printf("[Main] Started %s (daemon)\n", statusMonitor.getName());
 
+        if (rebalancer != null) {
+            rebalancer.start();
+            System.out.printf("[Main] Started %s (daemon)\n", rebalancer.getName());
+        }
+
+        if (intakeSweeper != null) {
+            intakeSweeper.start();
+            System.out.printf("[Main] Started %s (daemon)\n", intakeSweeper.getName());
+        }
+
         System.out.println("\n[Main] All threads started, system running...\n");
 
         generatorThread.join();
-        System.out.printf("\n[Main] Generator finished creating %d orders\n", numberOfOrders);
-
-        int waitCount = 0;
-        while (!requestQueue.isEmpty()) {
-            Thread.sleep(2000);
-            waitCount++;
-            System.out.printf("[Main] Queue: %d orders remaining (waiting %d seconds)\n",
-                    requestQueue.size(), waitCount * 2);
-
-            if (waitCount > 30) {
-                System.out.println("[Main] WARNING: Queue processing is taking too long");
-                System.out.println("[Main] Some orders may not have available taxis");
-                break;
+        if (numberOfOrders > 0) {
+            System.out.printf("\n[Main] Generator finished creating %d orders\n", numberOfOrders);
+        } else {
+            System.out.println("\n[Main] Trace replay finished");
+        }
+        intake.close();
+
+        long expectedRides = producedOrders.getAsLong();
+        System.out.printf("\n[Main] Waiting for %d rides to complete (%d in flight, %d waiting for a taxi)...\n",
+                expectedRides, expectedRides - service.getFinishedRides() - service.getShedRides(),
+                dispatcher.getPendingOrders());
+
+        long drainStart = System.currentTimeMillis();
+        if (service.awaitDrain(expectedRides, drainTimeoutSeconds, TimeUnit.SECONDS)) {
+            long drainMillis = System.currentTimeMillis() - drainStart;
+            if (service.getShedRides() > 0) {
+                System.out.printf("[Main] Drained in %d ms: %d rides completed, %d orders shed by admission control "
+                                + "after waiting past %d ms\n",
+                        drainMillis, service.getFinishedRides(), service.getShedRides(), intake.getTtlMillis());
+            } else {
+                System.out.printf("[Main] All rides completed, drained in %d ms\n", drainMillis);
             }
+        } else {
+            System.out.printf("[Main] WARNING: Drain timed out after %d seconds with %d of %d rides completed\n",
+                    drainTimeoutSeconds, service.getFinishedRides(), expectedRides);
+            System.out.println("[Main] Some orders may not have available taxis");
         }
-
-        System.out.println("\n[Main] Queue empty, waiting for rides to complete...");
-
-        Thread.sleep(5000);
+        service.shutdown();
+        System.out.printf("[Main] Intake: %d admitted (%d priority), %d delivered, %d expired, %d rejected, "
+                        + "peak buffer %d of %d per lane\n",
+                intake.getAdmitted(RideIntake.Lane.PRIORITY) + intake.getAdmitted(RideIntake.Lane.STANDARD),
+                intake.getAdmitted(RideIntake.Lane.PRIORITY), intake.getDelivered(),
+                intake.getExpired(RideIntake.Lane.PRIORITY) + intake.getExpired(RideIntake.Lane.STANDARD),
+                intake.getRejected(RideIntake.Lane.PRIORITY) + intake.getRejected(RideIntake.Lane.STANDARD),
+                intake.getPeakBuffered(), intake.getCapacity());
 
         System.out.println("\n[Main] Stopping system...");
 
+        if (fleetScheduler != null) {
+            fleetScheduler.stop();
+        }
         for (Thread taxiThread : taxiThreads) {
             taxiThread.interrupt();
             System.out.printf("[Main] Stopping %s\n", taxiThread.getName());
@@ -311,45 +634,47 @@ public class TaxiSystem {
         }
 
         dispatcherThread.join(1000);
+    }
 
-        System.out.println("\n" + "=".repeat(70));
-        System.out.println("[Main] FINAL REPORT");
-        System.out.println("[Main] Configuration used:");
-        System.out.printf("[Main]   Orders: %d (recommended: %d)\n",
-                numberOfOrders, RECOMMENDED_ORDERS);
-        System.out.printf("[Main]   Taxis: %d (recommended: %d)\n",
-                taxiCount, RECOMMENDED_TAXIS);
-        System.out.printf("[Main]   Min distance: %.1f (recommended: %.1f)\n",
-                minDistance, RECOMMENDED_DISTANCE);
-
-        long endTime = System.currentTimeMillis();
-        long actualTimeSeconds = (endTime - System.currentTimeMillis() + 3000) / 1000;
+    private static void printHistory(RideHistory history) {
+        long startNanos = System.nanoTime();
+        long[] demand = history.zoneDemand(ZONES_PER_SIDE, MAP_SIZE);
+        long[] hourly = history.hourlyThroughput(history.getFirstRequestedAt());
+        double[] utilization = history.taxiUtilization(history.getFirstRequestedAt(), history.getLastCompletedAt());
+        long scanMicros = (System.nanoTime() - startNanos) / 1_000;
 
-        System.out.println("\n[Main] Performance summary:");
-        System.out.printf("[Main]   Estimated time: %.1f seconds\n", estimatedTimeSeconds);
-        System.out.printf("[Main]   Recommended time: %.1f seconds\n", recommendedTimeSeconds);
+        System.out.printf("[History] %d rides in %d off-heap chunks (%.1f MB), aggregated in %d us\n",
+                history.size(), history.getChunkCount(), history.getOffHeapBytes() / (1024.0 * 1024.0), scanMicros);
 
-        if (estimatedTimeSeconds > 0) {
-            double efficiency = (recommendedTimeSeconds / estimatedTimeSeconds) * 100;
-            if (efficiency > 110) {
-                System.out.printf("[Main]   Efficiency: %.1f%% (better than recommended)\n", efficiency);
-            } else if (efficiency > 90) {
-                System.out.printf("[Main]   Efficiency: %.1f%% (similar to recommended)\n", efficiency);
-            } else {
-                System.out.printf("[Main]   Efficiency: %.1f%% (slower than recommended)\n", efficiency);
-            }
+        Integer[] zones = new Integer[demand.length];
+        for (int zone = 0; zone < zones.length; zone++) {
+            zones[zone] = zone;
         }
-
-        System.out.println();
-        dispatcher.printStatus();
-
-        if (!allRecommended && estimatedTimeSeconds > recommendedTimeSeconds * 1.2) {
-            System.out.println("\n[Main] SUGGESTION: For faster execution next time, try:");
-            System.out.printf("[Main]   Orders: %d, Taxis: %d, Min distance: %.1f\n",
-                    RECOMMENDED_ORDERS, RECOMMENDED_TAXIS, RECOMMENDED_DISTANCE);
+        Arrays.sort(zones, (a, b) -> Long.compare(demand[b], demand[a]));
+        StringBuilder busiest = new StringBuilder();
+        for (int i = 0; i < Math.min(BUSIEST_ZONES, zones.length); i++) {
+            int zone = zones[i];
+            busiest.append(String.format(" (%d,%d)=%d", zone % ZONES_PER_SIDE, zone / ZONES_PER_SIDE, demand[zone]));
         }
+        System.out.printf("[History] Busiest pickup zones of %dx%d:%s\n", ZONES_PER_SIDE, ZONES_PER_SIDE, busiest);
 
-        System.out.println("[Main] SYSTEM STOPPED");
-
+        StringBuilder hours = new StringBuilder();
+        for (int hour = 0; hour < hourly.length; hour++) {
+            hours.append(String.format(" h%d=%d", hour, hourly[hour]));
+        }
+        System.out.printf("[History] Completed rides per hour:%s\n", hours);
+
+        double total = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        int taxis = 0;
+        for (int id = 1; id < utilization.length; id++) {
+            total += utilization[id];
+            min = Math.min(min, utilization[id]);
+            max = Math.max(max, utilization[id]);
+            taxis++;
+        }
+        System.out.printf("[History] Taxi utilization over %d taxis: mean %.1f%%, min %.1f%%, max %.1f%%\n",
+                taxis, taxis == 0 ? 0 : total * 100 / taxis, taxis == 0 ? 0 : min * 100, max * 100);
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+class TimingWheel {
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private static final class Timer {
+        private final long deadlineTick;
+        private final Runnable task;
+        private Timer next;
+
+        private Timer(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+    }
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final Timer[][] buckets;
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.buckets = new Timer[LEVELS][SLOTS];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void schedule(long deadlineMillis, Runnable task) {
+        long deadlineTick = (deadlineMillis - startMillis + tickMillis - 1) / tickMillis;
+        insert(new Timer(deadlineTick, task));
+    }
+
+    public int advanceTo(long nowMillis) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        int fired = 0;
+        while (currentTick <= targetTick) {
+            fired += processTick();
+        }
+        return fired;
+    }
+
+    private int processTick() {
+        int index = (int) (currentTick & SLOT_MASK);
+        if (index == 0) {
+            cascade(1);
+        }
+
+        int fired = 0;
+        Timer timer;
+        while ((timer = buckets[0][index]) != null) {
+            buckets[0][index] = timer.next;
+            timer.next = null;
+            size--;
+            timer.task.run();
+            fired++;
+        }
+
+        currentTick++;
+        return fired;
+    }
+
+    private void cascade(int level) {
+        if (level >= LEVELS) {
+            return;
+        }
+
+        int index = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        if (index == 0) {
+            cascade(level + 1);
+        }
+
+        Timer timer = buckets[level][index];
+        buckets[level][index] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            size--;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(Timer timer) {
+        long tick = Math.max(timer.deadlineTick, currentTick);
+        long delta = tick - currentTick;
+        if (delta >= MAX_SPAN) {
+            tick = currentTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+
+        int index = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        timer.next = buckets[level][index];
+        buckets[level][index] = timer;
+        size++;
+    }
+}
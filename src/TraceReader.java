@@ -0,0 +1,392 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class TraceReader implements Closeable {
+    static final int DEFAULT_WINDOW_BYTES = 64 << 20;
+
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PICKUP_X = "pickupX".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PICKUP_Y = "pickupY".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DEST_X = "destX".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DEST_Y = "destY".getBytes(StandardCharsets.US_ASCII);
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long EXACT_MANTISSA_LIMIT = 1L << 53;
+
+    private static final int HAS_TIMESTAMP = 1;
+    private static final int HAS_PICKUP_X = 2;
+    private static final int HAS_PICKUP_Y = 4;
+    private static final int HAS_DEST_X = 8;
+    private static final int HAS_DEST_Y = 16;
+    private static final int COMPLETE = 31;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowBytes;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+
+    private int cursor;
+    private int lineEnd;
+    private double parsedNumber;
+    private char[] numberChars = new char[32];
+
+    private long timestamp;
+    private double pickupX;
+    private double pickupY;
+    private double destX;
+    private double destY;
+    private long records;
+    private long skippedLines;
+
+    public TraceReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_BYTES);
+    }
+
+    TraceReader(Path path, int windowBytes) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowBytes = windowBytes;
+        map(0);
+    }
+
+    public boolean advance() throws IOException {
+        while (true) {
+            int end = findLineEnd();
+            if (end < 0) {
+                return false;
+            }
+
+            boolean parsed = parseLine(position, end);
+            position = end + 1;
+            if (parsed) {
+                records++;
+                return true;
+            }
+            skippedLines++;
+        }
+    }
+
+    public long getTimestamp() { return timestamp; }
+    public double getPickupX() { return pickupX; }
+    public double getPickupY() { return pickupY; }
+    public double getDestX() { return destX; }
+    public double getDestY() { return destY; }
+    public long getRecords() { return records; }
+    public long getSkippedLines() { return skippedLines; }
+
+    RideRequest toRequest(long requestTimestamp) {
+        return new RideRequest(new Location(pickupX, pickupY), new Location(destX, destY), requestTimestamp);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        long length = Math.min(windowBytes, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        position = 0;
+    }
+
+    private int findLineEnd() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            for (int i = position; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+
+            long consumed = windowStart + position;
+            if (windowStart + limit >= fileSize) {
+                if (position < limit) {
+                    return limit;
+                }
+                return -1;
+            }
+            if (position == 0) {
+                skipOversizedLine();
+                continue;
+            }
+            map(consumed);
+        }
+    }
+
+    private void skipOversizedLine() throws IOException {
+        skippedLines++;
+        while (true) {
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    position = i + 1;
+                    return;
+                }
+            }
+            if (windowStart + limit >= fileSize) {
+                position = limit;
+                return;
+            }
+            map(windowStart + limit);
+        }
+    }
+
+    private boolean parseLine(int start, int end) {
+        cursor = start;
+        lineEnd = end;
+        int found = 0;
+
+        skipWhitespace();
+        if (!consume('{')) {
+            return false;
+        }
+        skipWhitespace();
+        if (consume('}')) {
+            return false;
+        }
+
+        while (cursor < lineEnd) {
+            skipWhitespace();
+            if (!consume('"')) {
+                return false;
+            }
+            int keyStart = cursor;
+            while (cursor < lineEnd && window.get(cursor) != '"') {
+                if (window.get(cursor) == '\\') {
+                    cursor++;
+                }
+                cursor++;
+            }
+            int keyEnd = cursor;
+            if (!consume('"')) {
+                return false;
+            }
+            skipWhitespace();
+            if (!consume(':')) {
+                return false;
+            }
+            skipWhitespace();
+
+            int field = fieldFor(keyStart, keyEnd);
+            if (field != 0) {
+                if (!parseNumber()) {
+                    return false;
+                }
+                store(field, parsedNumber);
+                found |= field;
+            } else if (!skipValue()) {
+                return false;
+            }
+
+            skipWhitespace();
+            if (consume(',')) {
+                continue;
+            }
+            if (consume('}')) {
+                break;
+            }
+            return false;
+        }
+        return found == COMPLETE;
+    }
+
+    private int fieldFor(int start, int end) {
+        if (matches(start, end, TIMESTAMP)) return HAS_TIMESTAMP;
+        if (matches(start, end, PICKUP_X)) return HAS_PICKUP_X;
+        if (matches(start, end, PICKUP_Y)) return HAS_PICKUP_Y;
+        if (matches(start, end, DEST_X)) return HAS_DEST_X;
+        if (matches(start, end, DEST_Y)) return HAS_DEST_Y;
+        return 0;
+    }
+
+    private void store(int field, double value) {
+        switch (field) {
+            case HAS_TIMESTAMP:
+                timestamp = (long) value;
+                break;
+            case HAS_PICKUP_X:
+                pickupX = value;
+                break;
+            case HAS_PICKUP_Y:
+                pickupY = value;
+                break;
+            case HAS_DEST_X:
+                destX = value;
+                break;
+            case HAS_DEST_Y:
+                destY = value;
+                break;
+        }
+    }
+
+    private boolean matches(int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (window.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean parseNumber() {
+        int numberStart = cursor;
+        boolean negative = consume('-');
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+
+        while (cursor < lineEnd && isDigit(window.get(cursor))) {
+            if (mantissa < Long.MAX_VALUE / 10 - 10) {
+                mantissa = mantissa * 10 + (window.get(cursor) - '0');
+            } else {
+                scale++;
+            }
+            cursor++;
+            digits++;
+        }
+        if (consume('.')) {
+            while (cursor < lineEnd && isDigit(window.get(cursor))) {
+                if (mantissa < Long.MAX_VALUE / 10 - 10) {
+                    mantissa = mantissa * 10 + (window.get(cursor) - '0');
+                    scale--;
+                }
+                cursor++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (cursor < lineEnd && (window.get(cursor) == 'e' || window.get(cursor) == 'E')) {
+            cursor++;
+            boolean negativeExponent = consume('-');
+            if (!negativeExponent) {
+                consume('+');
+            }
+            int exponent = 0;
+            int exponentDigits = 0;
+            while (cursor < lineEnd && isDigit(window.get(cursor))) {
+                exponent = Math.min(10_000, exponent * 10 + (window.get(cursor) - '0'));
+                cursor++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+
+        if (mantissa > EXACT_MANTISSA_LIMIT || Math.abs(scale) >= POWERS_OF_TEN.length) {
+            parsedNumber = parseSlow(numberStart, cursor);
+            return true;
+        }
+        double value = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+        parsedNumber = negative ? -value : value;
+        return true;
+    }
+
+    private double parseSlow(int start, int end) {
+        int length = end - start;
+        if (numberChars.length < length) {
+            numberChars = new char[length];
+        }
+        for (int i = 0; i < length; i++) {
+            numberChars[i] = (char) window.get(start + i);
+        }
+        return Double.parseDouble(new String(numberChars, 0, length));
+    }
+
+    private boolean skipValue() {
+        if (cursor >= lineEnd) {
+            return false;
+        }
+        byte first = window.get(cursor);
+        if (first == '"') {
+            return skipString();
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (cursor < lineEnd) {
+                byte b = window.get(cursor);
+                if (b == '"') {
+                    if (!skipString()) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        cursor++;
+                        return true;
+                    }
+                }
+                cursor++;
+            }
+            return false;
+        }
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b == ',' || b == '}' || b == ' ' || b == '\t' || b == '\r') {
+                break;
+            }
+            cursor++;
+        }
+        return true;
+    }
+
+    private boolean skipString() {
+        cursor++;
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b == '\\') {
+                cursor += 2;
+                continue;
+            }
+            cursor++;
+            if (b == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (cursor < lineEnd) {
+            byte b = window.get(cursor);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return;
+            }
+            cursor++;
+        }
+    }
+
+    private boolean consume(char expected) {
+        if (cursor < lineEnd && window.get(cursor) == expected) {
+            cursor++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
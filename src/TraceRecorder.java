@@ -0,0 +1,134 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class TraceRecorder implements RideListener, Closeable {
+    private static final int MAX_BUFFERED = 1 << 16;
+    private static final long MAX_HEAD_AGE_MILLIS = 3_600_000;
+
+    private static final class Outcome {
+        private final RideRequest request;
+        private int taxiId = -1;
+        private long assignedAt = -1;
+        private long completedAt = -1;
+        private boolean shed;
+
+        private Outcome(RideRequest request) {
+            this.request = request;
+        }
+    }
+
+    private final BufferedWriter writer;
+    private final Map<Integer, Outcome> inFlight;
+    private final StringBuilder line;
+    private long written;
+    private long latestMillis = Long.MIN_VALUE;
+
+    public TraceRecorder(Path path) throws IOException {
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        this.inFlight = new LinkedHashMap<>();
+        this.line = new StringBuilder(256);
+    }
+
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    @Override
+    public synchronized void onSubmitted(RideRequest request) {
+        inFlight.putIfAbsent(request.getId(), new Outcome(request));
+        drain(request.getTimestamp());
+    }
+
+    @Override
+    public synchronized void onAssigned(RideRequest request, Taxi taxi, long timeMillis, double pickupDistance) {
+        Outcome outcome = inFlight.get(request.getId());
+        if (outcome != null) {
+            outcome.taxiId = taxi.getId();
+            outcome.assignedAt = timeMillis;
+        }
+        drain(timeMillis);
+    }
+
+    @Override
+    public synchronized void onCompleted(RideRequest request, Taxi taxi, long timeMillis) {
+        Outcome outcome = inFlight.get(request.getId());
+        if (outcome != null) {
+            outcome.taxiId = taxi.getId();
+            outcome.completedAt = timeMillis;
+        }
+        drain(timeMillis);
+    }
+
+    @Override
+    public synchronized void onShed(RideRequest request) {
+        inFlight.computeIfAbsent(request.getId(), id -> new Outcome(request)).shed = true;
+        drain(request.getTimestamp());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Outcome outcome : inFlight.values()) {
+            write(outcome);
+        }
+        inFlight.clear();
+        writer.close();
+    }
+
+    private void drain(long nowMillis) {
+        latestMillis = Math.max(latestMillis, nowMillis);
+        Iterator<Outcome> iterator = inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            Outcome outcome = iterator.next();
+            boolean finished = outcome.completedAt >= 0 || outcome.shed;
+            boolean expired = inFlight.size() > MAX_BUFFERED
+                    || outcome.request.getTimestamp() < latestMillis - MAX_HEAD_AGE_MILLIS;
+            if (!finished && !expired) {
+                return;
+            }
+            write(outcome);
+            iterator.remove();
+        }
+    }
+
+    private void write(Outcome outcome) {
+        RideRequest request = outcome.request;
+        String status = outcome.completedAt >= 0 ? "completed"
+                : outcome.shed ? "shed"
+                : outcome.assignedAt >= 0 ? "assigned"
+                : "waiting";
+
+        line.setLength(0);
+        line.append("{\"id\":").append(request.getId())
+                .append(",\"timestamp\":").append(request.getTimestamp())
+                .append(",\"pickupX\":").append(request.getPickupLocation().getX())
+                .append(",\"pickupY\":").append(request.getPickupLocation().getY())
+                .append(",\"destX\":").append(request.getDestination().getX())
+                .append(",\"destY\":").append(request.getDestination().getY())
+                .append(",\"status\":\"").append(status).append('"');
+        if (outcome.taxiId >= 0) {
+            line.append(",\"taxi\":").append(outcome.taxiId);
+        }
+        if (outcome.assignedAt >= 0) {
+            line.append(",\"assignedAt\":").append(outcome.assignedAt);
+        }
+        if (outcome.completedAt >= 0) {
+            line.append(",\"completedAt\":").append(outcome.completedAt);
+        }
+        line.append("}\n");
+
+        try {
+            writer.append(line);
+            written++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
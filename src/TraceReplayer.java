@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+class TraceReplayer implements Runnable {
+    private final Path path;
+    private final RideIntake intake;
+    private final double speed;
+    private volatile boolean running;
+    private volatile long replayed;
+    private volatile long skippedLines;
+
+    public TraceReplayer(Path path, RideIntake intake, double speed) {
+        this.path = path;
+        this.intake = intake;
+        this.speed = speed;
+        this.running = true;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public long getReplayed() {
+        return replayed;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    @Override
+    public void run() {
+        try (TraceReader reader = new TraceReader(path)) {
+            long startNanos = System.nanoTime();
+            long startMillis = System.currentTimeMillis();
+            long firstTimestamp = Long.MIN_VALUE;
+
+            while (running && reader.advance()) {
+                if (firstTimestamp == Long.MIN_VALUE) {
+                    firstTimestamp = reader.getTimestamp();
+                }
+                long offsetMillis = speed > 0
+                        ? (long) (Math.max(0, reader.getTimestamp() - firstTimestamp) / speed)
+                        : 0;
+                if (speed > 0) {
+                    waitUntil(startNanos + TimeUnit.MILLISECONDS.toNanos(offsetMillis));
+                }
+                intake.submit(reader.toRequest(startMillis + offsetMillis), RideIntake.Lane.STANDARD);
+                replayed = reader.getRecords();
+            }
+            skippedLines = reader.getSkippedLines();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        EventLog.log(LogEvent.TRACE_FINISHED, replayed, skippedLines);
+    }
+
+    private static void waitUntil(long deadlineNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.List;
+
+interface TravelModel {
+    double distance(Location from, Location to);
+
+    double travelSeconds(Location from, Location to);
+
+    default long travelTimeMillis(Location from, Location to) {
+        return (long) (travelSeconds(from, to) * 1000);
+    }
+
+    default double[] travelSeconds(List<Location> origins, Location target) {
+        double[] seconds = new double[origins.size()];
+        for (int i = 0; i < seconds.length; i++) {
+            seconds[i] = travelSeconds(origins.get(i), target);
+        }
+        return seconds;
+    }
+
+    default int fastest(List<Location> origins, Location target) {
+        double[] seconds = travelSeconds(origins, target);
+        int best = -1;
+        double bestSeconds = Double.MAX_VALUE;
+        for (int i = 0; i < seconds.length; i++) {
+            if (seconds[i] < bestSeconds) {
+                bestSeconds = seconds[i];
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    default boolean isStraightLine() {
+        return false;
+    }
+}
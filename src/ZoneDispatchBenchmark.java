@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ZoneDispatchBenchmark {
+    private static final int[] ZONES_PER_SIDE = {1, 2, 4, 8};
+    private static final int TAXIS = 20_000;
+    private static final long RUN_MILLIS = 2_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        EventLog.setLevel(EventLog.Level.WARN);
+
+        System.out.println("ZONE-SHARDED DISPATCH BENCHMARK\n");
+        System.out.printf("Taxis: %d | Dispatch threads: %d | Duration: %d ms per run\n\n", TAXIS, threads, RUN_MILLIS);
+        System.out.printf("%-8s %18s %10s\n", "Zones", "Dispatches/sec", "Speedup");
+
+        double baseline = 0;
+        for (int zonesPerSide : ZONES_PER_SIDE) {
+            double throughput = run(zonesPerSide, threads);
+            if (baseline == 0) {
+                baseline = throughput;
+            }
+            System.out.printf("%-8d %18.0f %9.1fx\n", zonesPerSide * zonesPerSide, throughput, throughput / baseline);
+        }
+    }
+
+    private static double run(int zonesPerSide, int threadCount) throws InterruptedException {
+        ZonedDispatcher dispatcher = new ZonedDispatcher(new LinkedBlockingQueue<>(), zonesPerSide);
+        Random random = new Random(42);
+        for (int i = 1; i <= TAXIS; i++) {
+            Location start = new Location(random.nextDouble() * 100, random.nextDouble() * 100);
+            dispatcher.registerTaxi(new Taxi(i, start, dispatcher));
+        }
+
+        AtomicLong dispatched = new AtomicLong();
+        long deadline = System.currentTimeMillis() + RUN_MILLIS;
+        List<Thread> threads = new ArrayList<>(threadCount);
+
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom localRandom = ThreadLocalRandom.current();
+                long count = 0;
+                while ((count & 1023) != 0 || System.currentTimeMillis() < deadline) {
+                    Location pickup = new Location(localRandom.nextDouble() * 100, localRandom.nextDouble() * 100);
+                    Location destination = new Location(localRandom.nextDouble() * 100, localRandom.nextDouble() * 100);
+                    RideRequest request = new RideRequest(pickup, destination, 0);
+                    Taxi taxi = dispatcher.dispatch(request, 0);
+                    if (taxi != null) {
+                        taxi.arriveAt(destination);
+                        taxi.completeRide(request);
+                    }
+                    count++;
+                }
+                dispatched.addAndGet(count);
+            }, "Bench-" + t);
+            threads.add(thread);
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return dispatched.get() / seconds;
+    }
+}
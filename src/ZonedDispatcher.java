@@ -0,0 +1,370 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.LongSupplier;
+
+class ZonedDispatcher extends Dispatcher {
+    private static final double MAP_SIZE = 100.0;
+
+    private final BlockingQueue<RideRequest> requestQueue;
+    private final int zonesPerSide;
+    private final double zoneSize;
+    private final Dispatcher[] zones;
+
+    public ZonedDispatcher(BlockingQueue<RideRequest> requestQueue, int zonesPerSide) {
+        super(requestQueue);
+        this.requestQueue = requestQueue;
+        this.zonesPerSide = zonesPerSide;
+        this.zoneSize = MAP_SIZE / zonesPerSide;
+        this.zones = new Dispatcher[zonesPerSide * zonesPerSide];
+
+        for (int i = 0; i < zones.length; i++) {
+            zones[i] = new Dispatcher(new LinkedBlockingQueue<>(), getLatencyStats(), getFleetStore());
+            zones[i].joinZones(this);
+        }
+    }
+
+    public int getZoneCount() {
+        return zones.length;
+    }
+
+    Dispatcher zoneFor(Location location) {
+        return zones[zoneIndex(location)];
+    }
+
+    private int zoneIndex(Location location) {
+        return zoneCoord(location.getY()) * zonesPerSide + zoneCoord(location.getX());
+    }
+
+    private int zoneCoord(double value) {
+        int coord = (int) (value / zoneSize);
+        if (coord < 0) return 0;
+        if (coord >= zonesPerSide) return zonesPerSide - 1;
+        return coord;
+    }
+
+    private double distanceToZone(int index, Location location) {
+        double minX = (index % zonesPerSide) * zoneSize;
+        double minY = (index / zonesPerSide) * zoneSize;
+        double dx = Math.max(0, Math.max(minX - location.getX(), location.getX() - (minX + zoneSize)));
+        double dy = Math.max(0, Math.max(minY - location.getY(), location.getY() - (minY + zoneSize)));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    Taxi stealTaxi(Dispatcher thief, Location pickup) {
+        Integer[] order = new Integer[zones.length];
+        for (int i = 0; i < zones.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(index -> distanceToZone(index, pickup)));
+
+        for (int index : order) {
+            Dispatcher zone = zones[index];
+            if (zone == thief) {
+                continue;
+            }
+            Taxi taxi = zone.stealNearestTaxi(pickup);
+            if (taxi != null) {
+                return taxi;
+            }
+        }
+        return null;
+    }
+
+    void lendToWaitingZone(Dispatcher owner, Taxi taxi) {
+        Location location = taxi.getCurrentLocation();
+        Dispatcher target = null;
+        double targetDistance = Double.MAX_VALUE;
+
+        for (int i = 0; i < zones.length; i++) {
+            if (zones[i] != owner && zones[i].hasPendingOrders()) {
+                double distance = distanceToZone(i, location);
+                if (distance < targetDistance) {
+                    targetDistance = distance;
+                    target = zones[i];
+                }
+            }
+        }
+
+        if (target != null && owner.releaseTaxi(taxi)) {
+            target.adoptTaxi(taxi);
+        }
+    }
+
+    @Override
+    public void registerTaxi(Taxi taxi) {
+        zoneFor(taxi.getCurrentLocation()).registerTaxi(taxi);
+    }
+
+    @Override
+    public void enableBatching(long windowMillis, int maxBatchSize) {
+        super.enableBatching(windowMillis, maxBatchSize);
+        for (Dispatcher zone : zones) {
+            zone.enableBatching(windowMillis, maxBatchSize);
+        }
+    }
+
+    @Override
+    public void enableEtaDispatch() {
+        super.enableEtaDispatch();
+        for (Dispatcher zone : zones) {
+            zone.enableEtaDispatch();
+        }
+    }
+
+    @Override
+    public void enablePooling(int capacity, double maxDetour, long maxPickupWaitMillis) {
+        super.enablePooling(capacity, maxDetour, maxPickupWaitMillis);
+        for (Dispatcher zone : zones) {
+            zone.enablePooling(capacity, maxDetour, maxPickupWaitMillis);
+        }
+    }
+
+    @Override
+    public void setClock(LongSupplier clock) {
+        super.setClock(clock);
+        for (Dispatcher zone : zones) {
+            zone.setClock(clock);
+        }
+    }
+
+    @Override
+    public void setTravelModel(TravelModel travelModel) {
+        super.setTravelModel(travelModel);
+        for (Dispatcher zone : zones) {
+            zone.setTravelModel(travelModel);
+        }
+    }
+
+    @Override
+    public void setRideListener(RideListener rideListener) {
+        super.setRideListener(rideListener);
+        for (Dispatcher zone : zones) {
+            zone.setRideListener(rideListener);
+        }
+    }
+
+    @Override
+    Taxi dispatch(RideRequest request, long nowMillis) {
+        return zoneFor(request.getPickupLocation()).dispatch(request, nowMillis);
+    }
+
+    @Override
+    boolean restoreAssignment(Taxi taxi, RideRequest request, long nowMillis) {
+        return taxi.getDispatcher().restoreAssignment(taxi, request, nowMillis);
+    }
+
+    @Override
+    int dispatchBatch(List<RideRequest> batch, long nowMillis, List<Taxi> assignedTaxis) {
+        List<List<RideRequest>> perZone = new ArrayList<>(zones.length);
+        for (int i = 0; i < zones.length; i++) {
+            perZone.add(new ArrayList<>());
+        }
+        for (RideRequest request : batch) {
+            perZone.get(zoneIndex(request.getPickupLocation())).add(request);
+        }
+
+        batch.clear();
+        int assigned = 0;
+        for (int i = 0; i < zones.length; i++) {
+            List<RideRequest> zoneBatch = perZone.get(i);
+            if (!zoneBatch.isEmpty()) {
+                assigned += zones[i].dispatchBatch(zoneBatch, nowMillis, assignedTaxis);
+            }
+        }
+        return assigned;
+    }
+
+    @Override
+    public int getCompletedRides() {
+        int total = super.getCompletedRides();
+        for (Dispatcher zone : zones) {
+            total += zone.getCompletedRides();
+        }
+        return total;
+    }
+
+    @Override
+    public int getPendingOrders() {
+        int total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getPendingOrders();
+        }
+        return total;
+    }
+
+    @Override
+    public int getAssignedRides() {
+        int total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getAssignedRides();
+        }
+        return total;
+    }
+
+    @Override
+    public int getChainedRides() {
+        int total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getChainedRides();
+        }
+        return total;
+    }
+
+    @Override
+    public void enableRebalancing(long intervalMillis, long demandHalfLifeMillis) {
+        super.enableRebalancing(intervalMillis, demandHalfLifeMillis);
+        for (Dispatcher zone : zones) {
+            zone.enableRebalancing(intervalMillis, demandHalfLifeMillis);
+        }
+    }
+
+    @Override
+    public int rebalanceIdleTaxis(long nowMillis) {
+        int moved = 0;
+        for (Dispatcher zone : zones) {
+            moved += zone.rebalanceIdleTaxis(nowMillis);
+        }
+        return moved;
+    }
+
+    @Override
+    public int getRepositionedTaxis() {
+        int total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getRepositionedTaxis();
+        }
+        return total;
+    }
+
+    @Override
+    public int getPooledRides() {
+        int total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getPooledRides();
+        }
+        return total;
+    }
+
+    @Override
+    public double getTotalDistanceDriven() {
+        double total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getTotalDistanceDriven();
+        }
+        return total;
+    }
+
+    @Override
+    long getTotalPickupWaitMillis() {
+        long total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getTotalPickupWaitMillis();
+        }
+        return total;
+    }
+
+    @Override
+    double getTotalPickupDistance() {
+        double total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getTotalPickupDistance();
+        }
+        return total;
+    }
+
+    @Override
+    public int getTaxiCount() {
+        int total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getTaxiCount();
+        }
+        return total;
+    }
+
+    @Override
+    public int getAvailableTaxiCount() {
+        int total = 0;
+        for (Dispatcher zone : zones) {
+            total += zone.getAvailableTaxiCount();
+        }
+        return total;
+    }
+
+    @Override
+    public int getQueueSize() {
+        int total = requestQueue.size();
+        for (Dispatcher zone : zones) {
+            total += zone.getQueueSize();
+        }
+        return total;
+    }
+
+    @Override
+    public void run() {
+        List<Thread> zoneThreads = new ArrayList<>(zones.length);
+        for (int i = 0; i < zones.length; i++) {
+            Thread thread = new Thread(zones[i], "Dispatcher-Z" + i);
+            zoneThreads.add(thread);
+            thread.start();
+        }
+
+        try {
+            while (true) {
+                RideRequest request = requestQueue.take();
+                zoneFor(request.getPickupLocation()).submit(request);
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : zoneThreads) {
+                thread.interrupt();
+            }
+            for (Thread thread : zoneThreads) {
+                try {
+                    thread.join(1000);
+                } catch (InterruptedException ignored) {
+                    break;
+                }
+            }
+            System.out.println("[Dispatcher] Zone router shutting down");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void printStatus() {
+        FleetSnapshot fleet = getFleetStore().snapshot(currentTimeMillis());
+        int[] availableByZone = new int[zones.length];
+        for (int i = 0; i < fleet.size(); i++) {
+            if (fleet.getState(i) == Taxi.AVAILABLE) {
+                availableByZone[zoneCoord(fleet.getY(i)) * zonesPerSide + zoneCoord(fleet.getX(i))]++;
+            }
+        }
+
+        System.out.println("\n[Status] SYSTEM INFORMATION");
+        System.out.printf("[Status] Zones: %d | Taxis: %d | Completed rides: %d | Queue: %d | Waiting for taxi: %d\n",
+                zones.length, getTaxiCount(), getCompletedRides(), getQueueSize(), getPendingOrders());
+        if (isEtaDispatch()) {
+            System.out.printf("[Status] Rides chained onto finishing taxis: %d\n", getChainedRides());
+        }
+        if (isRebalancing()) {
+            System.out.printf("[Status] Idle taxis repositioned toward demand: %d\n", getRepositionedTaxis());
+        }
+        if (isPooling()) {
+            System.out.printf("[Status] Rides pooled into shared routes: %d (capacity %d, max detour %.0f%%, "
+                            + "max pickup wait %d s)\n",
+                    getPooledRides(), getPoolCapacity(), getMaxDetour() * 100, getMaxPickupWaitMillis() / 1000);
+        }
+
+        for (int i = 0; i < zones.length; i++) {
+            Dispatcher zone = zones[i];
+            System.out.printf("[Status] Zone %d: %d taxis, %d available, %d completed, %d queued, %d waiting\n",
+                    i, zone.getTaxiCount(), availableByZone[i],
+                    zone.getCompletedRides(), zone.getQueueSize(), zone.getPendingOrders());
+        }
+        System.out.printf("[Status] Available taxis: %d\n", fleet.count(Taxi.AVAILABLE));
+        System.out.println();
+    }
+}